@@ -2,16 +2,22 @@ package com.example.lottooptionspro.controller;
 
 import com.example.lottooptionspro.presenter.PdfPreviewPresenter;
 import com.example.lottooptionspro.presenter.PdfPreviewView;
+import com.example.lottooptionspro.util.BetslipPageLayout;
 import javafx.fxml.FXML;
+import javafx.collections.FXCollections;
 import javafx.scene.control.Alert;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.RadioButton;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SpinnerValueFactory;
 import javafx.scene.control.Toggle;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.control.ProgressIndicator;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.layout.VBox;
+import javafx.scene.layout.StackPane;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import net.rgielen.fxweaver.core.FxmlView;
@@ -19,7 +25,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Component
 @FxmlView("/com.example.lottooptionspro/controller/PdfPreviewView.fxml")
@@ -28,7 +35,7 @@ public class PdfPreviewController implements PdfPreviewView {
     public final PdfPreviewPresenter presenter;
 
     @FXML
-    private VBox pdfPagesContainer;
+    private ListView<Integer> pdfPagesList;
     @FXML
     private RadioButton colorRadioButton;
     @FXML
@@ -38,9 +45,17 @@ public class PdfPreviewController implements PdfPreviewView {
     @FXML
     private ToggleGroup colorToggleGroup;
     @FXML
+    private CheckBox vectorPdfCheckBox;
+    @FXML
+    private CheckBox jpegCheckBox;
+    @FXML
+    private CheckBox splitVolumesCheckBox;
+    @FXML
+    private Spinner<Integer> slipsPerVolumeSpinner;
+    @FXML
     private ProgressIndicator progressIndicator;
     @FXML
-    private ScrollPane scrollPane;
+    private Label jobSummaryLabel;
 
     @Autowired
     public PdfPreviewController(PdfPreviewPresenter presenter) {
@@ -53,6 +68,14 @@ public class PdfPreviewController implements PdfPreviewView {
         colorToggleGroup.selectedToggleProperty().addListener((observable, oldValue, newValue) -> {
             presenter.onColorModeChanged(getSelectedColorMode());
         });
+        // JPEG is only used for color slips
+        jpegCheckBox.disableProperty().bind(colorRadioButton.selectedProperty().not());
+        slipsPerVolumeSpinner.disableProperty().bind(splitVolumesCheckBox.selectedProperty().not());
+        // Typed text is otherwise only committed on Enter
+        slipsPerVolumeSpinner.getEditor().focusedProperty().addListener((observable, wasFocused, focused) -> {
+            if (!focused) commitSlipsPerVolume();
+        });
+        pdfPagesList.setCellFactory(list -> new PageCell());
     }
 
     @FXML
@@ -66,19 +89,16 @@ public class PdfPreviewController implements PdfPreviewView {
     }
 
     @Override
-    public void displayPdfPages(List<Image> pages) {
-        pdfPagesContainer.getChildren().clear();
-        for (Image pageImage : pages) {
-            ImageView imageView = new ImageView(pageImage);
-            imageView.setPreserveRatio(true);
-            imageView.fitWidthProperty().bind(scrollPane.widthProperty().subtract(20));
-            pdfPagesContainer.getChildren().add(imageView);
-        }
+    public void showPages(int pageCount) {
+        // Fresh items make every visible cell ask for its page again, e.g. after a color mode change
+        pdfPagesList.setItems(FXCollections.observableArrayList(
+                IntStream.range(0, pageCount).boxed().collect(Collectors.toList())));
+        pdfPagesList.scrollTo(0);
     }
 
     @Override
     public void closeView() {
-        Stage stage = (Stage) pdfPagesContainer.getScene().getWindow();
+        Stage stage = (Stage) pdfPagesList.getScene().getWindow();
         stage.close();
     }
 
@@ -88,7 +108,7 @@ public class PdfPreviewController implements PdfPreviewView {
         fileChooser.setTitle("Save PDF");
         fileChooser.setInitialFileName(initialFileName);
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF Files", "*.pdf"));
-        return fileChooser.showSaveDialog(pdfPagesContainer.getScene().getWindow());
+        return fileChooser.showSaveDialog(pdfPagesList.getScene().getWindow());
     }
 
     @Override
@@ -109,7 +129,94 @@ public class PdfPreviewController implements PdfPreviewView {
 
     @Override
     public void showProgress(boolean show) {
-        scrollPane.setVisible(!show);
+        pdfPagesList.setVisible(!show);
         progressIndicator.setVisible(show);
     }
+
+    @Override
+    public boolean isVectorPdfSelected() {
+        return vectorPdfCheckBox.isSelected();
+    }
+
+    @Override
+    public boolean isJpegCompressionSelected() {
+        return jpegCheckBox.isSelected();
+    }
+
+    @Override
+    public int getSlipsPerVolume() {
+        if (!splitVolumesCheckBox.isSelected()) return 0;
+        commitSlipsPerVolume();
+        return slipsPerVolumeSpinner.getValue();
+    }
+
+    /**
+     * Take over whatever is typed in the spinner, rounded down to whole pages as the volumes
+     * will be, so the value shown is the one used. Text that is not a number is reverted.
+     */
+    private void commitSlipsPerVolume() {
+        SpinnerValueFactory<Integer> factory = slipsPerVolumeSpinner.getValueFactory();
+        int slips = factory.getValue();
+        try {
+            slips = Integer.parseInt(slipsPerVolumeSpinner.getEditor().getText().trim());
+        } catch (NumberFormatException e) {
+            // Keep the last committed value
+        }
+        int perPage = BetslipPageLayout.SLIPS_PER_PAGE;
+        factory.setValue(Math.max(perPage, slips / perPage * perPage));
+        slipsPerVolumeSpinner.getEditor().setText(factory.getConverter().toString(factory.getValue()));
+    }
+
+    @Override
+    public void showJobSummary(String summary) {
+        jobSummaryLabel.setText(summary != null ? summary : "");
+    }
+
+    @Override
+    public void setVectorPdfAvailable(boolean available) {
+        vectorPdfCheckBox.setDisable(!available);
+        if (!available) {
+            vectorPdfCheckBox.setSelected(false);
+        }
+    }
+
+    /**
+     * One page of the preview. Cells are recycled as the list scrolls, so only the visible
+     * pages (plus the presenter's prefetched neighbours) are ever rendered. Until its image
+     * arrives a cell shows a blank, correctly sized page with a spinner.
+     */
+    private class PageCell extends ListCell<Integer> {
+        private final ImageView imageView = new ImageView();
+        private final ProgressIndicator loadingIndicator = new ProgressIndicator();
+        private final StackPane page = new StackPane(imageView, loadingIndicator);
+
+        PageCell() {
+            float aspectRatio = BetslipPageLayout.PAGE_SIZE.getHeight() / BetslipPageLayout.PAGE_SIZE.getWidth();
+            imageView.setPreserveRatio(true);
+            imageView.fitWidthProperty().bind(pdfPagesList.widthProperty().subtract(40));
+            page.minHeightProperty().bind(imageView.fitWidthProperty().multiply(aspectRatio));
+            page.setStyle("-fx-background-color: white;");
+            loadingIndicator.setMaxSize(40, 40);
+            setStyle("-fx-alignment: center;");
+        }
+
+        @Override
+        protected void updateItem(Integer pageIndex, boolean empty) {
+            super.updateItem(pageIndex, empty);
+            imageView.setImage(null);
+            if (empty || pageIndex == null) {
+                setGraphic(null);
+                return;
+            }
+
+            loadingIndicator.setVisible(true);
+            setGraphic(page);
+            presenter.requestPage(pageIndex, image -> {
+                if (pageIndex.equals(getItem())) { // The cell may have been reused for another page meanwhile
+                    imageView.setImage(image);
+                    loadingIndicator.setVisible(false);
+                }
+            });
+        }
+    }
 }
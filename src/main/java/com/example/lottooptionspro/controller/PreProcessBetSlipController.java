@@ -3,11 +3,16 @@ package com.example.lottooptionspro.controller;
 import com.example.lottooptionspro.GameInformation;
 import com.example.lottooptionspro.presenter.PreProcessBetSlipPresenter;
 import com.example.lottooptionspro.presenter.PreProcessBetSlipView;
+import com.example.lottooptionspro.util.AdaptiveBinarizer;
+import javafx.animation.PauseTransition;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.util.Duration;
 import net.rgielen.fxweaver.core.FxmlView;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
@@ -16,6 +21,7 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 @Component
 @FxmlView("/com.example.lottooptionspro/controller/BetSlipPreprocessView.fxml")
@@ -31,9 +37,17 @@ public class PreProcessBetSlipController implements GameInformation, PreProcessB
     @FXML private ImageView originalImageView;
     @FXML private ImageView processedImageView;
     @FXML private ImageView saveConfirmationIcon;
+    @FXML private CheckBox livePreviewCheckBox;
+    @FXML private ChoiceBox<AdaptiveBinarizer.Method> binarizationChoiceBox;
 
     private final PreProcessBetSlipPresenter presenter;
 
+    // Passed as the threshold of methods that do not use one
+    private static final int UNUSED_THRESHOLD = 0;
+
+    // Restarted on every change, so the preview only runs once typing pauses
+    private final PauseTransition livePreviewDelay = new PauseTransition(Duration.millis(150));
+
     public PreProcessBetSlipController() {
         this.presenter = new PreProcessBetSlipPresenter(this);
     }
@@ -47,6 +61,61 @@ public class PreProcessBetSlipController implements GameInformation, PreProcessB
         } catch (IOException e) {
             showError("Could not load success icon: " + e.getMessage());
         }
+
+        binarizationChoiceBox.getItems().setAll(AdaptiveBinarizer.Method.values());
+        binarizationChoiceBox.setValue(AdaptiveBinarizer.Method.GLOBAL_THRESHOLD);
+        // Only the global threshold uses the threshold field
+        thresholdField.disableProperty().bind(
+                binarizationChoiceBox.valueProperty().isNotEqualTo(AdaptiveBinarizer.Method.GLOBAL_THRESHOLD));
+
+        livePreviewDelay.setOnFinished(event -> updateLivePreview());
+        for (TextField field : List.of(thresholdField, distanceFromTopField, distanceFromBottomField, distanceFromLeftField)) {
+            field.textProperty().addListener((observable, oldText, newText) -> {
+                if (livePreviewCheckBox.isSelected()) {
+                    livePreviewDelay.playFromStart();
+                }
+            });
+        }
+        binarizationChoiceBox.valueProperty().addListener((observable, oldMethod, newMethod) -> {
+            if (livePreviewCheckBox.isSelected()) {
+                livePreviewDelay.playFromStart();
+            }
+        });
+        livePreviewCheckBox.selectedProperty().addListener((observable, wasSelected, selected) -> {
+            if (selected) {
+                livePreviewDelay.playFromStart();
+            }
+        });
+    }
+
+    /**
+     * Preview the current settings on the scaled-down slip. Half-typed values are skipped
+     * silently instead of raising the errors a full pass would.
+     */
+    private void updateLivePreview() {
+        Integer threshold = usesThreshold() ? parseOrNull(thresholdField.getText()) : Integer.valueOf(UNUSED_THRESHOLD);
+        Integer distanceFromTop = parseOrNull(distanceFromTopField.getText());
+        Integer distanceFromBottom = parseOrNull(distanceFromBottomField.getText());
+        Integer distanceFromLeft = distanceFromLeftField.getText().isEmpty() ? Integer.valueOf(0) : parseOrNull(distanceFromLeftField.getText());
+        if (threshold == null || distanceFromTop == null || distanceFromBottom == null || distanceFromLeft == null) {
+            return;
+        }
+        presenter.previewImage(getBinarizationMethod(), threshold, distanceFromTop, distanceFromBottom, distanceFromLeft);
+    }
+
+    /**
+     * The threshold field is disabled for the other methods, so whatever it holds is ignored.
+     */
+    private boolean usesThreshold() {
+        return getBinarizationMethod() == AdaptiveBinarizer.Method.GLOBAL_THRESHOLD;
+    }
+
+    private static Integer parseOrNull(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     @FXML
@@ -79,6 +148,7 @@ public class PreProcessBetSlipController implements GameInformation, PreProcessB
 
     @Override
     public int getThreshold() {
+        if (!usesThreshold()) return UNUSED_THRESHOLD;
         try {
             return Integer.parseInt(thresholdField.getText());
         } catch (NumberFormatException e) {
@@ -118,6 +188,31 @@ public class PreProcessBetSlipController implements GameInformation, PreProcessB
         }
     }
 
+    @Override
+    public AdaptiveBinarizer.Method getBinarizationMethod() {
+        AdaptiveBinarizer.Method method = binarizationChoiceBox.getValue();
+        return method != null ? method : AdaptiveBinarizer.Method.GLOBAL_THRESHOLD;
+    }
+
+    @Override
+    public boolean validateSettings() {
+        String error = null;
+        if (usesThreshold() && parseOrNull(thresholdField.getText()) == null) {
+            error = "Invalid threshold value.";
+        } else if (parseOrNull(distanceFromTopField.getText()) == null) {
+            error = "Invalid distance from top value.";
+        } else if (parseOrNull(distanceFromBottomField.getText()) == null) {
+            error = "Invalid distance from bottom value.";
+        } else if (!distanceFromLeftField.getText().isEmpty() && parseOrNull(distanceFromLeftField.getText()) == null) {
+            error = "Invalid distance from left value.";
+        }
+        if (error != null) {
+            showError(error);
+            return false;
+        }
+        return true;
+    }
+
     @Override
     public void setOriginalImage(Image image) {
         originalImageView.setImage(image);
@@ -4,7 +4,10 @@ import com.example.lottooptionspro.GameInformation;
 import com.example.lottooptionspro.presenter.RandomNumberGeneratorPresenter;
 import com.example.lottooptionspro.presenter.RandomNumberGeneratorView;
 import com.example.lottooptionspro.service.BetslipGenerationService;
+import com.example.lottooptionspro.service.BetslipRenderMode;
 import com.example.lottooptionspro.service.RandomNumberGeneratorService;
+import com.example.lottooptionspro.util.GlobalOptionDialog;
+import com.example.lottooptionspro.util.JobEstimateDialog;
 import com.floyd.model.generatednumbers.PrizeLevelResult;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
@@ -90,22 +93,8 @@ public class RandomNumberGeneratorController implements GameInformation, RandomN
                 return;
             }
 
-            betslipGenerationService.generatePdf(numberSets, stateName, gameName)
-                    .doOnSubscribe(subscription -> Platform.runLater(() -> {
-                        showProgress(true);
-                        setContentDisabled(true);
-                    }))
-                    .doFinally(signalType -> Platform.runLater(() -> {
-                        showProgress(false);
-                        setContentDisabled(false);
-                    }))
-                    .subscribe(
-                            this::showPreviewDialog,
-                            error -> Platform.runLater(() -> {
-                                showAlert("Error", "Failed to generate PDF: " + error.getMessage());
-                                error.printStackTrace();
-                            })
-                    );
+            GlobalOptionDialog.chooseForGame(betslipGenerationService, stateName, gameName,
+                    globalOption -> renderBetslips(numberSets, globalOption));
 
         } else {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
@@ -120,11 +109,48 @@ public class RandomNumberGeneratorController implements GameInformation, RandomN
         }
     }
 
+    /**
+     * Estimate the job first, so a long or oversized one can be called off before anything is rendered.
+     */
+    private void renderBetslips(List<int[]> numberSets, String globalOption) {
+        betslipGenerationService.estimateJob(numberSets, stateName, gameName, BetslipRenderMode.COLOR)
+                .subscribe(
+                        estimate -> Platform.runLater(() -> {
+                            if (JobEstimateDialog.confirm(estimate)) {
+                                generatePdf(numberSets, globalOption);
+                            }
+                        }),
+                        error -> Platform.runLater(() -> {
+                            showAlert("Error", "Failed to generate PDF: " + error.getMessage());
+                            error.printStackTrace();
+                        })
+                );
+    }
+
+    private void generatePdf(List<int[]> numberSets, String globalOption) {
+        betslipGenerationService.generatePdf(numberSets, stateName, gameName, globalOption)
+                .doOnSubscribe(subscription -> Platform.runLater(() -> {
+                    showProgress(true);
+                    setContentDisabled(true);
+                }))
+                .doFinally(signalType -> Platform.runLater(() -> {
+                    showProgress(false);
+                    setContentDisabled(false);
+                }))
+                .subscribe(
+                        this::showPreviewDialog,
+                        error -> Platform.runLater(() -> {
+                            showAlert("Error", "Failed to generate PDF: " + error.getMessage());
+                            error.printStackTrace();
+                        })
+                );
+    }
+
     private void showPreviewDialog(BetslipGenerationService.PdfGenerationResult result) {
         Platform.runLater(() -> {
             FxControllerAndView<PdfPreviewController, Parent> controllerAndView = fxWeaver.load(PdfPreviewController.class);
             PdfPreviewController controller = controllerAndView.getController();
-            controller.presenter.setData(result.images, result.template);
+            controller.presenter.setData(result);
 
             Stage dialogStage = new Stage();
             dialogStage.initModality(Modality.WINDOW_MODAL);
@@ -134,6 +160,7 @@ public class RandomNumberGeneratorController implements GameInformation, RandomN
             Scene scene = new Scene(controllerAndView.getView().get());
             dialogStage.setScene(scene);
             dialogStage.showAndWait();
+            controller.presenter.onViewClosed();
         });
     }
 
@@ -5,7 +5,10 @@ import com.example.lottooptionspro.model.smart.*;
 import com.example.lottooptionspro.presenter.SmartNumberGeneratorPresenter;
 import com.example.lottooptionspro.presenter.SmartNumberGeneratorView;
 import com.example.lottooptionspro.service.BetslipGenerationService;
+import com.example.lottooptionspro.service.BetslipRenderMode;
 import com.example.lottooptionspro.service.SmartNumberGenerationService;
+import com.example.lottooptionspro.util.GlobalOptionDialog;
+import com.example.lottooptionspro.util.JobEstimateDialog;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -1229,23 +1232,8 @@ public class SmartNumberGeneratorController implements GameInformation, SmartNum
             int[][] ticketArrays = currentResult.getTicketsAsIntArrays();
             List<int[]> numberSets = Arrays.asList(ticketArrays);
 
-            betslipGenerationService.generatePdf(numberSets, stateName, gameName)
-                    .doOnSubscribe(subscription -> Platform.runLater(() -> {
-                        showLoading(true);
-                        setContentDisabled(true);
-                    }))
-                    .doFinally(signalType -> Platform.runLater(() -> {
-                        showLoading(false);
-                        setContentDisabled(false);
-                    }))
-                    .subscribe(
-                            this::showPreviewDialog,
-                            error -> Platform.runLater(() -> {
-                                System.err.println("ERROR: PDF generation failed: " + error.getMessage());
-                                error.printStackTrace();
-                                showAlert("Error", "Failed to generate PDF: " + error.getMessage());
-                            })
-                    );
+            GlobalOptionDialog.chooseForGame(betslipGenerationService, stateName, gameName,
+                    globalOption -> renderBetslips(numberSets, globalOption));
         } else {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
             alert.setTitle("Template Not Found");
@@ -1259,12 +1247,51 @@ public class SmartNumberGeneratorController implements GameInformation, SmartNum
         }
     }
 
+    /**
+     * Estimate the job first, so a long or oversized one can be called off before anything is rendered.
+     */
+    private void renderBetslips(List<int[]> numberSets, String globalOption) {
+        betslipGenerationService.estimateJob(numberSets, stateName, gameName, BetslipRenderMode.COLOR)
+                .subscribe(
+                        estimate -> Platform.runLater(() -> {
+                            if (JobEstimateDialog.confirm(estimate)) {
+                                generatePdf(numberSets, globalOption);
+                            }
+                        }),
+                        error -> Platform.runLater(() -> {
+                            System.err.println("ERROR: PDF generation failed: " + error.getMessage());
+                            error.printStackTrace();
+                            showAlert("Error", "Failed to generate PDF: " + error.getMessage());
+                        })
+                );
+    }
+
+    private void generatePdf(List<int[]> numberSets, String globalOption) {
+        betslipGenerationService.generatePdf(numberSets, stateName, gameName, globalOption)
+                .doOnSubscribe(subscription -> Platform.runLater(() -> {
+                    showLoading(true);
+                    setContentDisabled(true);
+                }))
+                .doFinally(signalType -> Platform.runLater(() -> {
+                    showLoading(false);
+                    setContentDisabled(false);
+                }))
+                .subscribe(
+                        this::showPreviewDialog,
+                        error -> Platform.runLater(() -> {
+                            System.err.println("ERROR: PDF generation failed: " + error.getMessage());
+                            error.printStackTrace();
+                            showAlert("Error", "Failed to generate PDF: " + error.getMessage());
+                        })
+                );
+    }
+
     private void showPreviewDialog(BetslipGenerationService.PdfGenerationResult result) {
         Platform.runLater(() -> {
             try {
                 FxControllerAndView<PdfPreviewController, Parent> controllerAndView = fxWeaver.load(PdfPreviewController.class);
                 PdfPreviewController controller = controllerAndView.getController();
-                controller.presenter.setData(result.images, result.template);
+                controller.presenter.setData(result);
 
                 Stage dialogStage = new Stage();
                 dialogStage.initModality(Modality.WINDOW_MODAL);
@@ -1274,6 +1301,7 @@ public class SmartNumberGeneratorController implements GameInformation, SmartNum
                 Scene scene = new Scene(controllerAndView.getView().get());
                 dialogStage.setScene(scene);
                 dialogStage.showAndWait();
+                controller.presenter.onViewClosed();
             } catch (Exception e) {
                 System.err.println("ERROR: Failed to show preview dialog: " + e.getMessage());
                 e.printStackTrace();
@@ -1,42 +1,86 @@
 package com.example.lottooptionspro.presenter;
 
 import com.example.lottooptionspro.models.BetslipTemplate;
+import com.example.lottooptionspro.service.BetslipGenerationService;
+import com.example.lottooptionspro.service.BetslipJobEstimate;
+import com.example.lottooptionspro.service.BetslipRenderContext;
+import com.example.lottooptionspro.util.BetslipPageLayout;
+import com.example.lottooptionspro.util.FxImageBridge;
 import com.example.lottooptionspro.util.ImageProcessor;
+import com.example.lottooptionspro.util.PdfImageEncoding;
+import com.example.lottooptionspro.util.PdfVolumes;
+import com.example.lottooptionspro.util.StreamingPdfWriter;
+import com.example.lottooptionspro.util.VectorSlipPainter;
 import javafx.application.Platform;
-import javafx.concurrent.Task;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
-import javax.imageio.ImageIO;
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Component
 public class PdfPreviewPresenter {
 
-    private static final float PAGE_PADDING = 20f;
-    private static final float SCISSOR_LINE_SPACING = 20f;
+    private static final Logger log = LoggerFactory.getLogger(PdfPreviewPresenter.class);
 
+    private final BetslipGenerationService betslipGenerationService;
     private PdfPreviewView view;
     private List<BufferedImage> originalColorImages;
     private BetslipTemplate template;
+    private BetslipRenderContext renderContext;
+    private List<List<int[]>> slips;
+    private BetslipJobEstimate estimate;
+    private volatile String previewColorMode;
+
+    // Preview and save work shares one small pool instead of starting a thread per request
+    private static final int BACKGROUND_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+    private final ExecutorService backgroundExecutor = Executors.newFixedThreadPool(BACKGROUND_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "pdf-preview-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Scheduler backgroundScheduler = Schedulers.fromExecutorService(backgroundExecutor, "pdf-preview");
+
+    private static final int MAX_CACHED_PAGES = 12;
+    private final Map<String, Image> renderedPages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Map<String, PendingPage> pendingPages = new HashMap<>();
+
+    // Converted slips per color mode, bounded to a quarter of the heap
+    private static final long PROCESSED_IMAGE_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+    private volatile ProcessedImageCache processedImages = new ProcessedImageCache(PROCESSED_IMAGE_BUDGET);
+    private int[] sourceIndexes;
+
+    public PdfPreviewPresenter(BetslipGenerationService betslipGenerationService) {
+        this.betslipGenerationService = betslipGenerationService;
+    }
 
     public void setView(PdfPreviewView view) {
         this.view = view;
@@ -45,6 +89,36 @@ public class PdfPreviewPresenter {
     public void setData(List<BufferedImage> images, BetslipTemplate template) {
         this.originalColorImages = images;
         this.template = template;
+        this.renderContext = null;
+        this.slips = null;
+        this.estimate = null;
+        this.sourceIndexes = computeSourceIndexes(images);
+        processedImages = new ProcessedImageCache(PROCESSED_IMAGE_BUDGET);
+        renderedPages.clear();
+        cancelPendingPages(null);
+        view.setVectorPdfAvailable(false);
+        view.showJobSummary(null);
+        updatePreview();
+    }
+
+    /**
+     * Preview a generation result. Keeping its render context and slip numbers lets
+     * scanner-ready output be rendered straight from the template. Results of jobs too
+     * large for memory render their slips on demand, so converted slips are not cached
+     * for them either.
+     */
+    public void setData(BetslipGenerationService.PdfGenerationResult result) {
+        this.originalColorImages = result.images;
+        this.template = result.template;
+        this.renderContext = result.context;
+        this.slips = result.slips;
+        this.estimate = result.estimate;
+        this.sourceIndexes = result.sourceIndexes != null ? result.sourceIndexes : computeSourceIndexes(result.images);
+        processedImages = new ProcessedImageCache(rendersOnDemand() ? 0 : PROCESSED_IMAGE_BUDGET);
+        renderedPages.clear();
+        cancelPendingPages(null);
+        view.setVectorPdfAvailable(renderContext != null && slips != null);
+        view.showJobSummary(estimate != null ? estimate.getSummary() : null);
         updatePreview();
     }
 
@@ -52,270 +126,394 @@ public class PdfPreviewPresenter {
         updatePreview();
     }
 
+    /**
+     * Lay out one placeholder per page straight away. Pages are only composited when the
+     * view asks for them through {@link #requestPage}, so opening the preview costs the
+     * same whatever the job size.
+     */
     private void updatePreview() {
         if (originalColorImages == null) return;
 
-        view.showProgress(true);
         String colorMode = view.getSelectedColorMode();
+        previewColorMode = colorMode;
+        cancelPendingPages(colorMode);
+        view.showPages(getPageCount());
+    }
 
-        Task<List<Image>> previewTask = new Task<>() {
-            @Override
-            protected List<Image> call() {
-                List<BufferedImage> processedImages = processImagesForColorMode(colorMode);
-                List<BufferedImage> pagePreviews = createCompositePageImages(processedImages);
-                return pagePreviews.stream()
-                        .map(img -> SwingFXUtils.toFXImage(img, null))
-                        .collect(Collectors.toList());
-            }
-        };
+    public int getPageCount() {
+        if (originalColorImages == null) return 0;
+        return (originalColorImages.size() + BetslipPageLayout.SLIPS_PER_PAGE - 1) / BetslipPageLayout.SLIPS_PER_PAGE;
+    }
 
-        previewTask.setOnSucceeded(e -> {
-            view.displayPdfPages(previewTask.getValue());
-            view.showProgress(false);
-        });
-        previewTask.setOnFailed(e -> {
-            view.showError("Failed to update preview.");
-            view.showProgress(false);
-        });
+    /**
+     * Deliver the preview of a page in the current color mode, rendering it in the background
+     * if it is not cached, and prefetch its neighbours. Must be called on the FX thread; the
+     * callback also runs there, and only if the page is still wanted in that color mode.
+     */
+    public void requestPage(int pageIndex, Consumer<Image> onRendered) {
+        String colorMode = previewColorMode;
+        Image cached = renderedPages.get(pageKey(colorMode, pageIndex));
+        if (cached != null) {
+            onRendered.accept(cached);
+        } else {
+            renderPage(colorMode, pageIndex, onRendered);
+        }
 
-        new Thread(previewTask).start();
+        for (int neighbour : new int[]{pageIndex + 1, pageIndex - 1}) {
+            if (neighbour >= 0 && neighbour < getPageCount() && !renderedPages.containsKey(pageKey(colorMode, neighbour))) {
+                renderPage(colorMode, neighbour, null);
+            }
+        }
     }
 
-    public void save() {
-        String colorMode = view.getSelectedColorMode();
-        File file = view.showSavePdfDialog("betslips.pdf");
-        if (file == null) return;
-
-        view.showProgress(true);
+    private void renderPage(String colorMode, int pageIndex, Consumer<Image> onRendered) {
+        String key = pageKey(colorMode, pageIndex);
+        PendingPage waiting = pendingPages.get(key);
+        if (waiting != null) {
+            if (onRendered != null) waiting.callbacks.add(onRendered);
+            return;
+        }
+        PendingPage pending = new PendingPage(colorMode);
+        if (onRendered != null) pending.callbacks.add(onRendered);
+        pendingPages.put(key, pending);
+
+        List<BufferedImage> images = originalColorImages;
+        // Color slips read from a job rendered on demand are fresh canvases, free once composited
+        boolean recycleSlips = rendersOnDemand() && !isConvertedMode(colorMode);
+        pending.render = Mono.fromCallable(() -> {
+                    List<BufferedImage> pageImages = pageSlipImages(images, colorMode, pageIndex);
+                    Image page = FxImageBridge.toFxImage(createPageImage(pageImages));
+                    if (recycleSlips) {
+                        pageImages.forEach(betslipGenerationService::recycle);
+                    }
+                    return page;
+                })
+                .subscribeOn(backgroundScheduler)
+                .subscribe(image -> Platform.runLater(() -> {
+                    pendingPages.remove(key, pending);
+                    if (images != originalColorImages) return; // New data arrived meanwhile
+                    renderedPages.put(key, image);
+                    if (colorMode.equals(previewColorMode)) {
+                        pending.callbacks.forEach(callback -> callback.accept(image));
+                    }
+                }), error -> Platform.runLater(() -> {
+                    pendingPages.remove(key, pending);
+                    if (!(error instanceof CancellationException)) {
+                        log.error("Failed to render preview page {}", pageIndex + 1, error);
+                    }
+                }));
+    }
 
-        Task<List<BufferedImage>> processingTask = new Task<>() {
-            @Override
-            protected List<BufferedImage> call() {
-                return processImagesForColorMode(colorMode);
+    /**
+     * Latest wins: drop every queued or running page render for a color mode other than the
+     * one now shown, so superseded previews stop consuming the pool.
+     *
+     * @param currentColorMode the mode whose renders are kept, or null to drop them all, e.g. when new data arrives
+     */
+    private void cancelPendingPages(String currentColorMode) {
+        Iterator<PendingPage> it = pendingPages.values().iterator();
+        while (it.hasNext()) {
+            PendingPage pending = it.next();
+            if (!pending.colorMode.equals(currentColorMode)) {
+                if (pending.render != null) pending.render.dispose();
+                it.remove();
             }
-        };
-
-        processingTask.setOnSucceeded(event -> {
-            List<BufferedImage> processedImages = processingTask.getValue();
-            createPdfFromBufferedImages(processedImages)
-                    .doFinally(signal -> Platform.runLater(() -> view.showProgress(false)))
-                    .subscribe(docToSave -> {
-                        try {
-                            docToSave.save(file);
-                            docToSave.close();
-                            Platform.runLater(view::closeView);
-                        } catch (IOException e) {
-                            Platform.runLater(() -> view.showError("Failed to save PDF: " + e.getMessage()));
-                        }
-                    }, error -> Platform.runLater(() -> view.showError("Failed to create PDF: " + error.getMessage())));
-        });
-
-        processingTask.setOnFailed(event -> {
-            view.showError("Failed to process images for saving.");
-            view.showProgress(false);
-        });
-
-        new Thread(processingTask).start();
-    }
-
-    private List<BufferedImage> processImagesForColorMode(String colorMode) {
-        if ("Black & White".equals(colorMode)) {
-            return originalColorImages.stream().map(this::convertToGrayscale).collect(Collectors.toList());
-        } else if ("Scanner-Ready B&W".equals(colorMode)) {
-            return originalColorImages.stream().map(img -> ImageProcessor.convertToSelectiveBnW(img, template)).collect(Collectors.toList());
-        } else {
-            return new ArrayList<>(originalColorImages);
         }
     }
 
-    private BufferedImage convertToGrayscale(BufferedImage source) {
-        BufferedImage grayImage = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
-        Graphics2D g2d = grayImage.createGraphics();
-        g2d.drawImage(source, 0, 0, null);
-        g2d.dispose();
-        return grayImage;
+    private List<BufferedImage> pageSlipImages(List<BufferedImage> images, String colorMode, int pageIndex) {
+        int from = pageIndex * BetslipPageLayout.SLIPS_PER_PAGE;
+        int to = Math.min(from + BetslipPageLayout.SLIPS_PER_PAGE, images.size());
+        List<BufferedImage> pageImages = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            // A render that already started stops between slips once its mode is superseded
+            if (!colorMode.equals(previewColorMode)) {
+                throw new CancellationException("Preview for " + colorMode + " superseded");
+            }
+            pageImages.add(processSlipImage(colorMode, i));
+        }
+        return pageImages;
     }
 
-    private List<BufferedImage> createCompositePageImages(List<BufferedImage> images) {
-        List<BufferedImage> pagePreviews = new ArrayList<>();
-        if (images.isEmpty()) {
-            return pagePreviews;
-        }
+    private static final class PendingPage {
+        final String colorMode;
+        final List<Consumer<Image>> callbacks = new ArrayList<>();
+        Disposable render;
 
-        final PDRectangle pageSize = new PDRectangle(PDRectangle.LETTER.getHeight(), PDRectangle.LETTER.getWidth());
-        final int IMAGES_PER_PAGE = 3;
+        PendingPage(String colorMode) {
+            this.colorMode = colorMode;
+        }
+    }
 
-        List<List<BufferedImage>> pages = partitionImages(images, IMAGES_PER_PAGE);
+    private static String pageKey(String colorMode, int pageIndex) {
+        return colorMode + "#" + pageIndex;
+    }
 
-        for (List<BufferedImage> pageImages : pages) {
-            BufferedImage pagePreview = new BufferedImage((int) pageSize.getWidth(), (int) pageSize.getHeight(), BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = pagePreview.createGraphics();
-            g2d.setColor(Color.WHITE);
-            g2d.fillRect(0, 0, (int) pageSize.getWidth(), (int) pageSize.getHeight());
+    public void save() {
+        String colorMode = view.getSelectedColorMode();
+        File file = view.showSavePdfDialog("betslips.pdf");
+        if (file == null) return;
 
-            renderPageLayout(g2d, pageImages, pageSize);
+        view.showProgress(true);
+        PdfImageEncoding encoding = view.isJpegCompressionSelected() ? PdfImageEncoding.JPEG : PdfImageEncoding.LOSSLESS;
+        int slipsPerVolume = view.getSlipsPerVolume();
+
+        if (view.isVectorPdfSelected() && renderContext != null && slips != null) {
+            // No per-slip rasters at all: one shared background plus vector marks
+            List<List<int[]>> allSlips = slips;
+            savePdf(slipsPerVolume > 0
+                    ? writeVolumes(allSlips.size(), slipsPerVolume, file,
+                            volume -> writeVectorPdf(colorMode, allSlips.subList(volume.fromSlip, volume.toSlip), volume.file, encoding))
+                    : writeVectorPdf(colorMode, allSlips, file, encoding));
+            return;
+        }
 
-            g2d.dispose();
-            pagePreviews.add(pagePreview);
+        if (rendersOnDemand()) {
+            // Too large to convert up front: each slip is rendered, converted and encoded in turn
+            int slipCount = originalColorImages.size();
+            savePdf(slipsPerVolume > 0
+                    ? writeVolumes(slipCount, slipsPerVolume, file,
+                            volume -> writePdfOnDemand(colorMode, volume.fromSlip, volume.toSlip, volume.file, encoding))
+                    : writePdfOnDemand(colorMode, 0, slipCount, file, encoding));
+            return;
         }
-        return pagePreviews;
+
+        processImagesForColorMode(colorMode)
+                .subscribe(processedImages -> Platform.runLater(() -> savePdf(slipsPerVolume > 0
+                                ? writeVolumes(processedImages.size(), slipsPerVolume, file,
+                                        volume -> writePdfFromBufferedImages(processedImages.subList(volume.fromSlip, volume.toSlip), volume.file, encoding))
+                                : writePdfFromBufferedImages(processedImages, file, encoding))),
+                        error -> Platform.runLater(() -> {
+                            view.showError("Failed to process images for saving.");
+                            view.showProgress(false);
+                        }));
     }
 
-    private Mono<PDDocument> createPdfFromBufferedImages(List<BufferedImage> markedImages) {
-        return Mono.fromCallable(() -> {
-            PDDocument document = new PDDocument();
-            if (markedImages.isEmpty()) {
-                return document;
-            }
+    private void savePdf(Mono<Integer> pdf) {
+        pdf.doFinally(signal -> {
+                    betslipGenerationService.clearRecycledSlips();
+                    Platform.runLater(() -> view.showProgress(false));
+                })
+                .subscribe(pageCount -> Platform.runLater(view::closeView),
+                        error -> Platform.runLater(() -> view.showError("Failed to save PDF: " + error.getMessage())));
+    }
 
-            final PDRectangle pageSize = new PDRectangle(PDRectangle.LETTER.getHeight(), PDRectangle.LETTER.getWidth());
-            final int IMAGES_PER_PAGE = 3;
+    /**
+     * Write the job as fixed-size volumes named after the chosen file, several at a time through
+     * independent writers, plus a manifest of which tickets went into which volume. The manifest
+     * is written first so the volumes can be printed as soon as each one is finished.
+     *
+     * @return the total number of pages written
+     */
+    private Mono<Integer> writeVolumes(int slipCount, int slipsPerVolume, File target,
+                                       Function<PdfVolumes.Volume, Mono<Integer>> writeVolume) {
+        List<PdfVolumes.Volume> volumes = PdfVolumes.plan(slipCount, slipsPerVolume, target);
+        List<List<int[]>> manifestSlips = slips;
+        return Mono.fromCallable(() -> {
+                    PdfVolumes.writeManifest(PdfVolumes.manifestFile(target), volumes, manifestSlips);
+                    return volumes.size();
+                })
+                .subscribeOn(backgroundScheduler)
+                // Jobs rendered on demand write one volume at a time to stay within their estimate
+                .thenMany(Flux.fromIterable(volumes).flatMap(writeVolume, rendersOnDemand() ? 1 : BACKGROUND_THREADS))
+                .reduce(0, Integer::sum);
+    }
 
-            List<List<BufferedImage>> pages = partitionImages(markedImages, IMAGES_PER_PAGE);
+    /**
+     * Convert every slip for the color mode, reusing whatever the preview or an earlier save
+     * already converted. Deduplicated slips share one image instance, and their converted
+     * images are shared the same way. Each distinct slip is converted once, in parallel on the
+     * background pool, and the results are kept for the save even when the cache has no room for them.
+     */
+    private Mono<List<BufferedImage>> processImagesForColorMode(String colorMode) {
+        if (!isConvertedMode(colorMode)) {
+            return Mono.just(new ArrayList<>(originalColorImages));
+        }
 
-            for (List<BufferedImage> pageImages : pages) {
-                PDPage currentPage = new PDPage(pageSize);
-                document.addPage(currentPage);
-                try (PDPageContentStream contentStream = new PDPageContentStream(document, currentPage)) {
-                    renderPageLayout(contentStream, pageImages, pageSize, document);
-                }
-            }
-            return document;
-        }).subscribeOn(Schedulers.boundedElastic());
+        int[] indexes = sourceIndexes;
+        BufferedImage[] converted = new BufferedImage[indexes.length];
+        return Flux.range(0, indexes.length)
+                .filter(i -> indexes[i] == i)
+                .parallel(BACKGROUND_THREADS)
+                .runOn(backgroundScheduler)
+                .doOnNext(i -> converted[i] = processSlipImage(colorMode, i))
+                .sequential()
+                .then(Mono.fromCallable(() -> {
+                    List<BufferedImage> processed = new ArrayList<>(indexes.length);
+                    for (int sourceIndex : indexes) {
+                        processed.add(converted[sourceIndex]);
+                    }
+                    return processed;
+                }));
     }
 
-    private List<List<BufferedImage>> partitionImages(List<BufferedImage> images, int imagesPerPage) {
-        List<List<BufferedImage>> pages = new ArrayList<>();
-        for (int i = 0; i < images.size(); i += imagesPerPage) {
-            pages.add(images.subList(i, Math.min(i + imagesPerPage, images.size())));
+    private BufferedImage processSlipImage(String colorMode, int index) {
+        if (!isConvertedMode(colorMode)) {
+            return originalColorImages.get(index);
+        }
+
+        int sourceIndex = sourceIndexes[index];
+        BufferedImage processed = processedImages.get(colorMode, sourceIndex);
+        if (processed == null) {
+            processed = convertSlipImage(colorMode, sourceIndex);
+            processedImages.put(colorMode, sourceIndex, processed);
         }
-        return pages;
+        return processed;
     }
 
-    private void renderPageLayout(Graphics2D g2d, List<BufferedImage> pageImages, PDRectangle pageSize) {
-        PageLayoutParams layout = new PageLayoutParams(pageImages, pageSize);
-        float currentX = layout.startX;
+    private BufferedImage convertSlipImage(String colorMode, int index) {
+        if (!"Black & White".equals(colorMode) && renderContext != null && slips != null) {
+            // Render the binary slip directly from the template instead of scanning the color slip
+            return ImageProcessor.renderScannerReadySlip(renderContext.getCompiledTemplate(), slips.get(index),
+                    renderContext.getGlobalOptionIndex(), renderContext.getTargetWidth(), renderContext.getTargetHeight());
+        }
+        BufferedImage source = originalColorImages.get(index);
+        BufferedImage converted = "Black & White".equals(colorMode)
+                ? convertToGrayscale(source)
+                : ImageProcessor.convertToSelectiveBnW(source, template);
+        recycleOnDemandSlip(source);
+        return converted;
+    }
 
-        // Pass 1: Draw the images
-        for (BufferedImage awtImage : pageImages) {
-            g2d.drawImage(awtImage, (int) currentX, (int) layout.yPos, (int) layout.imageWidth, (int) layout.imageHeight, null);
-            currentX += layout.imageWidth + SCISSOR_LINE_SPACING;
+    /**
+     * Slips of a job rendered on demand are fresh pooled canvases owned by whoever read them,
+     * so they go back to the pool once used. Slips of a job kept in memory stay in use.
+     */
+    private void recycleOnDemandSlip(BufferedImage slip) {
+        if (rendersOnDemand()) {
+            betslipGenerationService.recycle(slip);
         }
+    }
 
-        // Pass 2: Draw the lines on top
-        drawSolidLine(g2d, layout.startX, PAGE_PADDING, layout.startX, pageSize.getHeight() - PAGE_PADDING);
-        drawSolidLine(g2d, layout.startX + layout.totalContentWidth, PAGE_PADDING, layout.startX + layout.totalContentWidth, pageSize.getHeight() - PAGE_PADDING);
-
-        currentX = layout.startX + layout.imageWidth;
-        for (int i = 0; i < pageImages.size() - 1; i++) {
-            float lineX = currentX + (SCISSOR_LINE_SPACING / 2);
-            drawDashedLine(g2d, lineX, PAGE_PADDING, lineX, pageSize.getHeight() - PAGE_PADDING);
-            currentX += layout.imageWidth + SCISSOR_LINE_SPACING;
+    /**
+     * For each slip, the index of the first slip sharing its image instance.
+     */
+    private static int[] computeSourceIndexes(List<BufferedImage> images) {
+        Map<BufferedImage, Integer> firstIndexByImage = new IdentityHashMap<>();
+        int[] sourceIndexes = new int[images.size()];
+        for (int i = 0; i < images.size(); i++) {
+            Integer first = firstIndexByImage.putIfAbsent(images.get(i), i);
+            sourceIndexes[i] = first != null ? first : i;
         }
+        return sourceIndexes;
     }
 
-    private void renderPageLayout(PDPageContentStream contentStream, List<BufferedImage> pageImages, PDRectangle pageSize, PDDocument document) throws IOException {
-        PageLayoutParams layout = new PageLayoutParams(pageImages, pageSize);
-        float currentX = layout.startX;
+    private BufferedImage convertToGrayscale(BufferedImage source) {
+        BufferedImage grayImage = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g2d = grayImage.createGraphics();
+        g2d.drawImage(source, 0, 0, null);
+        g2d.dispose();
+        return grayImage;
+    }
 
-        // Pass 1: Draw the images
-        for (int i = 0; i < pageImages.size(); i++) {
-            BufferedImage awtImage = pageImages.get(i);
-            PDImageXObject pdImage = convertToPdfImage(awtImage, document);
+    private BufferedImage createPageImage(List<BufferedImage> pageImages) {
+        final PDRectangle pageSize = BetslipPageLayout.PAGE_SIZE;
 
-            contentStream.drawImage(pdImage, currentX, layout.yPos, layout.imageWidth, layout.imageHeight);
-            currentX += layout.imageWidth;
+        BufferedImage pagePreview = new BufferedImage((int) pageSize.getWidth(), (int) pageSize.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = pagePreview.createGraphics();
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, (int) pageSize.getWidth(), (int) pageSize.getHeight());
 
-            if (i < pageImages.size() - 1) {
-                currentX += SCISSOR_LINE_SPACING;
-            }
-        }
-        
-        // Pass 2: Draw the border lines
-        drawSolidLine(contentStream, layout.startX, PAGE_PADDING, layout.startX, pageSize.getHeight() - PAGE_PADDING);
-        drawSolidLine(contentStream, layout.startX + layout.totalContentWidth, PAGE_PADDING, layout.startX + layout.totalContentWidth, pageSize.getHeight() - PAGE_PADDING);
-
-        // Pass 3: Draw scissor lines between images
-        currentX = layout.startX + layout.imageWidth;
-        for (int i = 0; i < pageImages.size() - 1; i++) {
-            float lineX = currentX + (SCISSOR_LINE_SPACING / 2);
-            drawDashedLine(contentStream, lineX, PAGE_PADDING, lineX, pageSize.getHeight() - PAGE_PADDING);
-            currentX += layout.imageWidth + SCISSOR_LINE_SPACING;
-        }
+        renderPageLayout(g2d, pageImages);
+
+        g2d.dispose();
+        return pagePreview;
     }
 
-    private static class PageLayoutParams {
-        final float imageWidth;
-        final float imageHeight;
-        final float startX;
-        final float yPos;
-        final float totalContentWidth;
-
-        PageLayoutParams(List<BufferedImage> pageImages, PDRectangle pageSize) {
-            float availableWidthForImages = pageSize.getWidth() - (2 * PAGE_PADDING) - ((pageImages.size() - 1) * SCISSOR_LINE_SPACING);
-            float calculatedWidth = availableWidthForImages / pageImages.size();
-
-            BufferedImage firstImage = pageImages.get(0);
-            float aspectRatio = (float) firstImage.getHeight() / firstImage.getWidth();
-            float calculatedHeight = calculatedWidth * aspectRatio;
-
-            if (calculatedHeight > pageSize.getHeight() - (2 * PAGE_PADDING)) {
-                this.imageHeight = pageSize.getHeight() - (2 * PAGE_PADDING);
-                this.imageWidth = this.imageHeight / aspectRatio;
-                this.yPos = PAGE_PADDING;
-            } else {
-                this.imageHeight = calculatedHeight;
-                this.imageWidth = calculatedWidth;
-                this.yPos = (pageSize.getHeight() - this.imageHeight) / 2;
-            }
+    /**
+     * Write the PDF page by page through a scratch-file backed writer, so the document
+     * never has to be held in memory as a whole. Slips are compressed in parallel and
+     * appended to the document in order.
+     *
+     * @return the number of pages written
+     */
+    private Mono<Integer> writePdfFromBufferedImages(List<BufferedImage> markedImages, File file, PdfImageEncoding encoding) {
+        // The preview still shows these images, so they are not handed back anywhere once encoded
+        return betslipGenerationService.writePdf(Flux.fromIterable(markedImages), file, encoding, estimate, image -> { });
+    }
 
-            float totalImagesWidth = pageImages.size() * this.imageWidth;
-            float totalSpacingWidth = Math.max(0, pageImages.size() - 1) * SCISSOR_LINE_SPACING;
-            this.totalContentWidth = totalImagesWidth + totalSpacingWidth;
-            this.startX = (pageSize.getWidth() - this.totalContentWidth) / 2;
+    /**
+     * Write slips {@code [from, to)} while rendering and converting them, holding no more
+     * slips at once than the job's estimate allows. Color slips are streamed straight from
+     * the render stage and go back to the canvas pool once encoded; converted modes render
+     * and convert each slip in turn, recycling the color source as soon as it is converted.
+     */
+    private Mono<Integer> writePdfOnDemand(String colorMode, int from, int to, File file, PdfImageEncoding encoding) {
+        int inFlight = estimate.getMaxInFlightSlips();
+        if (isConvertedMode(colorMode)) {
+            Flux<BufferedImage> convertedSlips = Flux.range(from, to - from)
+                    .flatMapSequential(i -> Mono.fromCallable(() -> processSlipImage(colorMode, i))
+                            .subscribeOn(backgroundScheduler), inFlight, 1);
+            // Converted copies are not pooled canvases, so nothing is handed back
+            return betslipGenerationService.writePdf(convertedSlips, file, encoding, estimate, image -> { });
         }
+        Flux<BufferedImage> colorSlips = betslipGenerationService.streamMarkedImages(renderContext, slips.subList(from, to), inFlight);
+        return betslipGenerationService.writePdf(colorSlips, file, encoding, estimate, betslipGenerationService::recycle);
     }
 
-    private PDImageXObject convertToPdfImage(BufferedImage awtImage, PDDocument document) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ImageIO.write(awtImage, "png", out);
-        out.flush();
-        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
-        return PDImageXObject.createFromByteArray(document, in.readAllBytes(), "png");
+    private static boolean isConvertedMode(String colorMode) {
+        return "Black & White".equals(colorMode) || "Scanner-Ready B&W".equals(colorMode);
     }
 
-    private void drawSolidLine(Graphics2D g2d, float xStart, float yStart, float xEnd, float yEnd) {
-        g2d.setStroke(new BasicStroke(1));
-        g2d.setColor(Color.RED);
-        g2d.drawLine((int) xStart, (int) yStart, (int) xEnd, (int) yEnd);
+    private boolean rendersOnDemand() {
+        return estimate != null && estimate.getStrategy().rendersOnDemand();
     }
 
-    private void drawDashedLine(Graphics2D g2d, float xStart, float yStart, float xEnd, float yEnd) {
-        g2d.setStroke(new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, new float[]{10, 5}, 0.0f));
-        g2d.setColor(Color.RED);
-        g2d.drawLine((int) xStart, (int) yStart, (int) xEnd, (int) yEnd);
+    /**
+     * Build the PDF from the render context instead of per-slip images. The base image for
+     * the color mode is embedded once and every slip's marks are drawn over it as vector
+     * rectangles; scanner-ready slips need no image at all.
+     */
+    private Mono<Integer> writeVectorPdf(String colorMode, List<List<int[]>> pdfSlips, File file, PdfImageEncoding encoding) {
+        return Mono.fromCallable(() -> {
+            try (StreamingPdfWriter writer = new StreamingPdfWriter(file, encoding)) {
+                PDImageXObject sharedBaseImage = null;
+                if ("Black & White".equals(colorMode)) {
+                    sharedBaseImage = writer.embedImage(convertToGrayscale(renderContext.getSlipBaseImage()));
+                } else if (!"Scanner-Ready B&W".equals(colorMode)) {
+                    sharedBaseImage = writer.embedImage(renderContext.getSlipBaseImage());
+                }
+                VectorSlipPainter painter = new VectorSlipPainter(renderContext.getCompiledTemplate(), sharedBaseImage,
+                        renderContext.getGlobalOptionIndex(), "Scanner-Ready B&W".equals(colorMode),
+                        renderContext.getTargetWidth(), renderContext.getTargetHeight());
+
+                for (List<List<int[]>> pageSlips : BetslipPageLayout.partition(pdfSlips)) {
+                    writer.appendVectorPage(painter, pageSlips);
+                }
+                writer.finish();
+                return writer.getPageCount();
+            }
+        }).subscribeOn(backgroundScheduler);
     }
 
-    private void drawSolidLine(PDPageContentStream contentStream, float xStart, float yStart, float xEnd, float yEnd) throws IOException {
-        contentStream.setLineDashPattern(new float[]{}, 0); // Solid line
-        contentStream.setStrokingColor(1.0f, 0.0f, 0.0f); // RGB Red (1.0, 0.0, 0.0)
-        contentStream.setLineWidth(1.0f);
-        contentStream.moveTo(xStart, yStart);
-        contentStream.lineTo(xEnd, yEnd);
-        contentStream.stroke();
+    private void renderPageLayout(Graphics2D g2d, List<BufferedImage> pageImages) {
+        BetslipPageLayout layout = pageLayoutFor(pageImages);
+
+        // Pass 1: Draw the images
+        for (int i = 0; i < pageImages.size(); i++) {
+            g2d.drawImage(pageImages.get(i), (int) layout.getSlipX(i), (int) layout.getSlipY(),
+                    (int) layout.getSlipWidth(), (int) layout.getSlipHeight(), null);
+        }
+
+        // Pass 2: Draw the lines on top
+        layout.drawCutLines(g2d);
     }
 
-    private void drawDashedLine(PDPageContentStream contentStream, float xStart, float yStart, float xEnd, float yEnd) throws IOException {
-        contentStream.setLineDashPattern(new float[]{10, 5}, 0);
-        contentStream.setStrokingColor(1.0f, 0.0f, 0.0f); // RGB Red (1.0, 0.0, 0.0)
-        contentStream.setLineWidth(1.0f);
-        contentStream.moveTo(xStart, yStart);
-        contentStream.lineTo(xEnd, yEnd);
-        contentStream.stroke();
-        contentStream.setLineDashPattern(new float[]{}, 0);
+    private static BetslipPageLayout pageLayoutFor(List<BufferedImage> pageImages) {
+        BufferedImage firstImage = pageImages.get(0);
+        return new BetslipPageLayout(pageImages.size(), firstImage.getWidth(), firstImage.getHeight());
     }
 
     public void cancel() {
         view.closeView();
     }
+
+    /**
+     * Called once the preview window has closed. Its page renders and the canvases pooled while
+     * its slips were read on demand are not needed any more.
+     */
+    public void onViewClosed() {
+        cancelPendingPages(null);
+        betslipGenerationService.clearRecycledSlips();
+    }
 }
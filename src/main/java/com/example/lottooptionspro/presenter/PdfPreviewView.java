@@ -1,14 +1,29 @@
 package com.example.lottooptionspro.presenter;
 
-import javafx.scene.image.Image;
 import java.io.File;
-import java.util.List;
 
 public interface PdfPreviewView {
-    void displayPdfPages(List<Image> pages);
+    /**
+     * Show placeholders for the given number of pages; page images are fetched on demand
+     * from {@link PdfPreviewPresenter#requestPage}.
+     */
+    void showPages(int pageCount);
     void closeView();
     File showSavePdfDialog(String initialFileName);
     String getSelectedColorMode();
     void showError(String message);
     void showProgress(boolean show);
+    boolean isVectorPdfSelected();
+    void setVectorPdfAvailable(boolean available);
+    boolean isJpegCompressionSelected();
+
+    /**
+     * @return how many slips to put in each PDF volume, or 0 to save a single file
+     */
+    int getSlipsPerVolume();
+
+    /**
+     * Show the job's expected memory use and save time, or nothing if the summary is null.
+     */
+    void showJobSummary(String summary);
 }
@@ -1,10 +1,12 @@
 package com.example.lottooptionspro.presenter;
 
+import com.example.lottooptionspro.util.AdaptiveBinarizer;
+import com.example.lottooptionspro.util.BetSlipPreprocessor;
+import com.example.lottooptionspro.util.FxImageBridge;
 import javafx.scene.image.Image;
 import javafx.scene.image.WritableImage;
 
 import javax.imageio.ImageIO;
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -14,6 +16,13 @@ public class PreProcessBetSlipPresenter {
     private final PreProcessBetSlipView view;
     private BufferedImage originalBufferedImage;
     private BufferedImage processedBufferedImage;
+    private WritableImage processedFxImage;
+
+    // Live previews run on a scaled-down copy; only saving processes the full-resolution slip
+    private static final int PREVIEW_MAX_PIXELS = 500_000;
+    private BufferedImage previewSourceImage;
+    private double previewScale;
+    private WritableImage previewFxImage;
 
     public PreProcessBetSlipPresenter(PreProcessBetSlipView view) {
         this.view = view;
@@ -22,7 +31,15 @@ public class PreProcessBetSlipPresenter {
     public void loadOriginalImage() {
         String imagePath = "src/main/resources/images/" + view.getStateName() + "/" + view.getGameName() + ".jpg";
         try {
-            originalBufferedImage = ImageIO.read(new File(imagePath));
+            BufferedImage loaded = ImageIO.read(new File(imagePath));
+            originalBufferedImage = null;
+            previewSourceImage = null;
+            if (loaded != null) {
+                // Kept as int RGB so each reprocess reads the pixels straight from the raster
+                originalBufferedImage = BetSlipPreprocessor.toIntRgb(loaded);
+                previewSourceImage = BetSlipPreprocessor.createPreviewProxy(originalBufferedImage, PREVIEW_MAX_PIXELS);
+                previewScale = (double) previewSourceImage.getWidth() / originalBufferedImage.getWidth();
+            }
             Image fxImage = convertToFxImage(originalBufferedImage);
             view.setOriginalImage(fxImage);
         } catch (IOException e) {
@@ -31,10 +48,18 @@ public class PreProcessBetSlipPresenter {
         }
     }
 
-    public void processImage() {
+    /**
+     * Run a full-resolution pass with the current settings and show it.
+     *
+     * @return false if there was no image or a setting was invalid, in which case nothing was processed
+     */
+    public boolean processImage() {
         if (originalBufferedImage == null) {
             view.showError("Original image not loaded.");
-            return;
+            return false;
+        }
+        if (!view.validateSettings()) {
+            return false;
         }
 
         int threshold = view.getThreshold();
@@ -42,63 +67,49 @@ public class PreProcessBetSlipPresenter {
         int distanceFromBottom = view.getDistanceFromBottom();
         int distanceFromLeft = view.getDistanceFromLeft();
 
-        processedBufferedImage = new BufferedImage(originalBufferedImage.getWidth(), originalBufferedImage.getHeight(), BufferedImage.TYPE_INT_RGB);
-
-        for (int y = 0; y < originalBufferedImage.getHeight(); y++) {
-            for (int x = 0; x < originalBufferedImage.getWidth(); x++) {
-                int rgb = originalBufferedImage.getRGB(x, y);
-                Color color = new Color(rgb);
-
-                boolean processPixel = false;
-
-                if (y < distanceFromTop) {
-                    processPixel = (x < distanceFromLeft);
-                    if (processPixel && isBlackish(color, threshold)) {
-                        processedBufferedImage.setRGB(x, y, Color.BLACK.getRGB());
-                    } else {
-                        processedBufferedImage.setRGB(x, y, Color.WHITE.getRGB());
-                    }
-                } else if (y >= originalBufferedImage.getHeight() - distanceFromBottom) {
-                    if (isBlackish(color, threshold)) {
-                        processedBufferedImage.setRGB(x, y, Color.BLACK.getRGB());
-                    } else {
-                        processedBufferedImage.setRGB(x, y, rgb);
-                    }
-                } else {
-                    processedBufferedImage.setRGB(x, y, Color.WHITE.getRGB());
-                }
-            }
-        }
+        processedBufferedImage = BetSlipPreprocessor.process(originalBufferedImage, view.getBinarizationMethod(), threshold,
+                distanceFromTop, distanceFromBottom, distanceFromLeft);
 
-        Image processedFxImage = convertToFxImage(processedBufferedImage);
+        // Every pass has the original's size, so the shown image is overwritten in place
+        processedFxImage = FxImageBridge.toFxImage(processedBufferedImage, processedFxImage);
         view.setProcessedImage(processedFxImage);
+        return true;
     }
 
-    public void saveProcessedImage() {
-        if (processedBufferedImage != null) {
-            try {
-                File outputFile = new File("src/main/resources/images/" + view.getStateName() + "/Processed_" + view.getGameName() + ".jpg");
-                ImageIO.write(processedBufferedImage, "jpg", outputFile);
-                view.showSaveConfirmation();
-            } catch (IOException e) {
-                view.showError("Could not save processed image: " + e.getMessage());
-                e.printStackTrace();
-            }
-        }
+    /**
+     * Show the settings applied to the scaled-down copy of the slip. Cheap enough to run on
+     * every change; distances are given in full-resolution pixels. Adaptive methods size their
+     * window to the image, so the preview matches the full pass closely.
+     */
+    public void previewImage(AdaptiveBinarizer.Method method, int threshold, int distanceFromTop, int distanceFromBottom, int distanceFromLeft) {
+        if (previewSourceImage == null) return;
+
+        BufferedImage preview = BetSlipPreprocessor.process(previewSourceImage, method, threshold,
+                scaleToPreview(distanceFromTop), scaleToPreview(distanceFromBottom), scaleToPreview(distanceFromLeft));
+        previewFxImage = FxImageBridge.toFxImage(preview, previewFxImage);
+        view.setProcessedImage(previewFxImage);
     }
 
-    private boolean isBlackish(Color color, int threshold) {
-        return color.getRed() < threshold && color.getGreen() < threshold && color.getBlue() < threshold;
+    private int scaleToPreview(int distance) {
+        return (int) Math.round(distance * previewScale);
     }
 
-    public Image convertToFxImage(BufferedImage image) {
-        if (image == null) return null;
-        WritableImage wr = new WritableImage(image.getWidth(), image.getHeight());
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
-                wr.getPixelWriter().setArgb(x, y, image.getRGB(x, y));
-            }
+    public void saveProcessedImage() {
+        // The view may only be showing a preview, so always save a full-resolution pass of the current settings
+        if (!processImage()) {
+            return;
+        }
+        try {
+            File outputFile = new File("src/main/resources/images/" + view.getStateName() + "/Processed_" + view.getGameName() + ".jpg");
+            ImageIO.write(processedBufferedImage, "jpg", outputFile);
+            view.showSaveConfirmation();
+        } catch (IOException e) {
+            view.showError("Could not save processed image: " + e.getMessage());
+            e.printStackTrace();
         }
-        return wr;
+    }
+
+    public Image convertToFxImage(BufferedImage image) {
+        return FxImageBridge.toFxImage(image);
     }
 }
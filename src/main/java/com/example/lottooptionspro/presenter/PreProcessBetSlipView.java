@@ -1,5 +1,6 @@
 package com.example.lottooptionspro.presenter;
 
+import com.example.lottooptionspro.util.AdaptiveBinarizer;
 import javafx.scene.image.Image;
 
 public interface PreProcessBetSlipView {
@@ -9,6 +10,12 @@ public interface PreProcessBetSlipView {
     int getDistanceFromTop();
     int getDistanceFromBottom();
     int getDistanceFromLeft();
+    AdaptiveBinarizer.Method getBinarizationMethod();
+
+    /**
+     * Check that every setting field holds a number, showing an error for the first one that does not.
+     */
+    boolean validateSettings();
     void setOriginalImage(Image image);
     void setProcessedImage(Image image);
     void showSaveConfirmation();
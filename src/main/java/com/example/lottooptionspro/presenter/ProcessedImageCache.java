@@ -0,0 +1,68 @@
+package com.example.lottooptionspro.presenter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Slip images already converted for a color mode, shared by the preview and save so a
+ * conversion is never repeated while its result fits in memory. Slips are cached per mode
+ * and evicted a whole mode at a time, least recently used first, once the total size
+ * exceeds the budget. The mode being filled is never evicted; if it alone outgrows the
+ * budget, further slips of that mode are simply not cached. Thread-safe.
+ */
+class ProcessedImageCache {
+
+    private final long maxBytes;
+    private final Map<String, ModeImages> modes = new LinkedHashMap<>(4, 0.75f, true);
+    private long currentBytes = 0;
+
+    ProcessedImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized BufferedImage get(String colorMode, int slipIndex) {
+        ModeImages images = modes.get(colorMode);
+        return images != null ? images.bySlip.get(slipIndex) : null;
+    }
+
+    synchronized void put(String colorMode, int slipIndex, BufferedImage image) {
+        ModeImages images = modes.computeIfAbsent(colorMode, mode -> new ModeImages());
+        long size = sizeInBytes(image);
+
+        // Make room by dropping other modes, least recently used first
+        Iterator<Map.Entry<String, ModeImages>> it = modes.entrySet().iterator();
+        while (currentBytes + size > maxBytes && it.hasNext()) {
+            Map.Entry<String, ModeImages> eldest = it.next();
+            if (eldest.getValue() == images) continue;
+            currentBytes -= eldest.getValue().bytes;
+            it.remove();
+        }
+        if (currentBytes + size > maxBytes) {
+            return;
+        }
+
+        BufferedImage previous = images.bySlip.put(slipIndex, image);
+        long delta = size - (previous != null ? sizeInBytes(previous) : 0);
+        images.bytes += delta;
+        currentBytes += delta;
+    }
+
+    synchronized void clear() {
+        modes.clear();
+        currentBytes = 0;
+    }
+
+    private static long sizeInBytes(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    private static final class ModeImages {
+        final Map<Integer, BufferedImage> bySlip = new HashMap<>();
+        long bytes = 0;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.lottooptionspro.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache of decoded betslip base images, shared across generation requests.
+ * Entries are keyed by image path (plus target size for rescaled copies) and invalidated
+ * when the file's modification time changes.
+ * Cached images are shared between callers and must be treated as read-only.
+ */
+@Component
+public class BaseImageCache {
+
+    private final long maxBytes;
+    private final Map<String, CachedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public BaseImageCache(@Value("${betslip.base-image-cache.max-mb:256}") long maxMegabytes) {
+        this.maxBytes = maxMegabytes * 1024 * 1024;
+    }
+
+    /**
+     * Get the decoded image at the given path, decoding it only if it is not cached
+     * or the file has changed since it was cached.
+     */
+    public BufferedImage get(String imagePath) throws IOException {
+        long lastModified = new File(imagePath).lastModified();
+        CachedImage cached = lookup(imagePath, lastModified);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.image;
+        }
+
+        misses.incrementAndGet();
+        return decode(imagePath, lastModified);
+    }
+
+    /**
+     * Get the image at the given path rescaled to the target size. The rescale is done once
+     * per (image, size) and cached alongside the decoded originals, under the same budget.
+     * Counts as a single hit or miss, however many entries it has to look at.
+     */
+    public BufferedImage getScaled(String imagePath, int targetWidth, int targetHeight) throws IOException {
+        long lastModified = new File(imagePath).lastModified();
+        CachedImage cachedSource = lookup(imagePath, lastModified);
+        BufferedImage source = cachedSource != null ? cachedSource.image : null;
+        if (source != null && source.getWidth() == targetWidth && source.getHeight() == targetHeight) {
+            hits.incrementAndGet();
+            return source;
+        }
+
+        String key = imagePath + "@" + targetWidth + "x" + targetHeight;
+        CachedImage cached = lookup(key, lastModified);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.image;
+        }
+
+        misses.incrementAndGet();
+        if (source == null) {
+            source = decode(imagePath, lastModified);
+            if (source.getWidth() == targetWidth && source.getHeight() == targetHeight) {
+                return source;
+            }
+        }
+        BufferedImage scaled = scale(source, targetWidth, targetHeight);
+        put(key, new CachedImage(scaled, lastModified));
+        return scaled;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * @return the entry under the key if it is still current, without counting the lookup
+     */
+    private synchronized CachedImage lookup(String key, long lastModified) {
+        CachedImage cached = entries.get(key);
+        return cached != null && cached.lastModified == lastModified ? cached : null;
+    }
+
+    private BufferedImage decode(String imagePath, long lastModified) throws IOException {
+        BufferedImage image = ImageIO.read(new File(imagePath));
+        if (image == null) {
+            throw new IOException("Unsupported or unreadable image: " + imagePath);
+        }
+        put(imagePath, new CachedImage(image, lastModified));
+        return image;
+    }
+
+    private synchronized void put(String imagePath, CachedImage cachedImage) {
+        CachedImage previous = entries.put(imagePath, cachedImage);
+        if (previous != null) {
+            currentBytes -= previous.sizeInBytes;
+        }
+        currentBytes += cachedImage.sizeInBytes;
+
+        // Evict least recently used images, but always keep the one just added
+        Iterator<Map.Entry<String, CachedImage>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && entries.size() > 1 && it.hasNext()) {
+            Map.Entry<String, CachedImage> eldest = it.next();
+            if (eldest.getValue() == cachedImage) continue;
+            currentBytes -= eldest.getValue().sizeInBytes;
+            it.remove();
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int targetWidth, int targetHeight) {
+        int type = source.getType() != BufferedImage.TYPE_CUSTOM ? source.getType() : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, type);
+        Graphics2D g2d = scaled.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        g2d.dispose();
+        return scaled;
+    }
+
+    static long sizeInBytes(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    private static final class CachedImage {
+        final BufferedImage image;
+        final long lastModified;
+        final long sizeInBytes;
+
+        CachedImage(BufferedImage image, long lastModified) {
+            this.image = image;
+            this.lastModified = lastModified;
+            this.sizeInBytes = BaseImageCache.sizeInBytes(image);
+        }
+    }
+}
@@ -2,45 +2,71 @@ package com.example.lottooptionspro.service;
 
 import com.example.lottooptionspro.models.BetslipTemplate;
 import com.example.lottooptionspro.models.GlobalOption;
-import com.example.lottooptionspro.models.PlayPanel;
-import com.google.gson.Gson;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import com.example.lottooptionspro.util.BetslipPageLayout;
+import com.example.lottooptionspro.util.CompiledBetslipTemplate;
+import com.example.lottooptionspro.util.ImageProcessor;
+import com.example.lottooptionspro.util.PdfImageEncoding;
+import com.example.lottooptionspro.util.PdfPageAssembler;
+import com.example.lottooptionspro.util.SlipDeduplicator;
+import com.example.lottooptionspro.util.SlipRasterPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 public class BetslipGenerationService {
 
-    private static final float PAGE_PADDING = 20f;
-    private static final float SCISSOR_LINE_SPACING = 20f;
+    private static final Logger log = LoggerFactory.getLogger(BetslipGenerationService.class);
+
+    /** Default cap on slips being rendered or awaiting the subscriber at once. */
+    public static final int DEFAULT_MAX_IN_FLIGHT_SLIPS = Math.max(2, Runtime.getRuntime().availableProcessors());
 
     public static class PdfGenerationResult {
         public final List<BufferedImage> images;
         public final BetslipTemplate template;
+        public final BetslipRenderContext context;
+        public final List<List<int[]>> slips;
+        public final int rendersSaved;
+        /** For every slip, the first slip sharing its image; null if not known. */
+        public final int[] sourceIndexes;
+        /** The preflight estimate the job was run with; null if none was made. */
+        public final BetslipJobEstimate estimate;
 
         public PdfGenerationResult(List<BufferedImage> images, BetslipTemplate template) {
+            this(images, template, null, null, 0);
+        }
+
+        public PdfGenerationResult(List<BufferedImage> images, BetslipTemplate template, BetslipRenderContext context,
+                                   List<List<int[]>> slips, int rendersSaved) {
+            this(images, template, context, slips, rendersSaved, null, null);
+        }
+
+        public PdfGenerationResult(List<BufferedImage> images, BetslipTemplate template, BetslipRenderContext context,
+                                   List<List<int[]>> slips, int rendersSaved, int[] sourceIndexes,
+                                   BetslipJobEstimate estimate) {
             this.images = images;
             this.template = template;
+            this.context = context;
+            this.slips = slips;
+            this.rendersSaved = rendersSaved;
+            this.sourceIndexes = sourceIndexes;
+            this.estimate = estimate;
         }
     }
 
@@ -63,122 +89,248 @@ public class BetslipGenerationService {
         }
     }
     
-    // Cache for global option selection per generation request
-    private String cachedGlobalOptionSelection = null;
+    private final BaseImageCache baseImageCache;
+    private final BetslipTemplateRegistry templateRegistry;
+    private final SlipRasterPool rasterPool = new SlipRasterPool(DEFAULT_MAX_IN_FLIGHT_SLIPS * 2);
+
+    private final GlobalOptionPreferences globalOptionPreferences;
+
+    public BetslipGenerationService(BaseImageCache baseImageCache, BetslipTemplateRegistry templateRegistry,
+                                    GlobalOptionPreferences globalOptionPreferences) {
+        this.baseImageCache = baseImageCache;
+        this.templateRegistry = templateRegistry;
+        this.globalOptionPreferences = globalOptionPreferences;
+    }
 
     public Mono<PdfGenerationResult> generatePdf(List<int[]> allNumberSets, String stateName, String gameName) {
-        // Clear any cached selection from previous generation
-        cachedGlobalOptionSelection = null;
-        
-        return Mono.fromCallable(() -> loadTemplate(stateName, gameName))
-                .subscribeOn(Schedulers.boundedElastic())
-                .flatMap(templateOptional -> {
-                    if (templateOptional.isEmpty()) {
-                        return Mono.error(new IOException("Betslip template not found for " + gameName));
-                    }
-                    return Mono.just(templateOptional.get());
-                })
-                .flatMap(template -> {
-                    try {
-                        // Get global option selection once before processing any images
-                        if (template.getGlobalOptions() != null && !template.getGlobalOptions().isEmpty()) {
-                            cachedGlobalOptionSelection = getSelectedGlobalOption(template);
-                        }
-                        
-                        BufferedImage baseImage = ImageIO.read(new File(template.getImagePath()));
-                        return createMultiPanelMarkedImages(allNumberSets, template, baseImage)
-                                .map(images -> new PdfGenerationResult(images, template));
-                    } catch (IOException e) {
-                        return Mono.error(e);
-                    }
-                });
+        return generatePdf(allNumberSets, stateName, gameName, BetslipRenderMode.COLOR, null);
     }
 
-    private Mono<List<BufferedImage>> createMultiPanelMarkedImages(List<int[]> allNumberSets, BetslipTemplate template, BufferedImage baseImage) {
-        int panelsPerSlip = template.getPlayPanels().size();
-        if (panelsPerSlip == 0) {
-            return Mono.error(new IOException("Template has no defined panels."));
-        }
+    public Mono<PdfGenerationResult> generatePdf(List<int[]> allNumberSets, String stateName, String gameName, String globalOption) {
+        return generatePdf(allNumberSets, stateName, gameName, BetslipRenderMode.COLOR, globalOption);
+    }
 
-        List<List<int[]>> partitionedNumberSets = new ArrayList<>();
-        for (int i = 0; i < allNumberSets.size(); i += panelsPerSlip) {
-            partitionedNumberSets.add(allNumberSets.subList(i, Math.min(i + panelsPerSlip, allNumberSets.size())));
-        }
+    /**
+     * Render all slips in the given mode. {@link BetslipRenderMode#SCANNER_READY} produces
+     * 1-bit slips directly from the template, skipping the color canvas entirely.
+     * Identical slips are rendered once and share the same image in the result.
+     * <p>
+     * Before rendering, the job's footprint is estimated against the free heap. Jobs that fit
+     * are rendered up front; larger ones get a result whose images are rendered each time they
+     * are read, so only the slips being previewed or written are ever held in memory.
+     *
+     * @param globalOption the global option to mark, chosen by the caller before generation
+     *                     starts; null uses the game's saved default or the template's first option
+     */
+    public Mono<PdfGenerationResult> generatePdf(List<int[]> allNumberSets, String stateName, String gameName,
+                                                 BetslipRenderMode renderMode, String globalOption) {
+        return createRenderContext(stateName, gameName, renderMode, globalOption)
+                .flatMap(context -> partitionSlips(allNumberSets, context)
+                        .flatMap(slips -> {
+                            SlipDeduplicator.Plan plan = SlipDeduplicator.plan(slips, context.getGlobalOptionIndex());
+                            if (plan.getRendersSaved() > 0) {
+                                log.debug("Rendering {} distinct slips for {} slips ({} renders saved)",
+                                        plan.distinctSlips.size(), slips.size(), plan.getRendersSaved());
+                            }
+                            BetslipJobEstimate estimate = estimateJob(slips.size(), plan.distinctSlips.size(), context);
+                            log.debug("Betslip job estimate: {}", estimate);
+                            if (estimate.getStrategy().rendersOnDemand()) {
+                                return Mono.just(new PdfGenerationResult(new OnDemandSlipImages(plan, context),
+                                        context.getTemplate(), context, slips, plan.getRendersSaved(),
+                                        plan.getFirstSlipIndexes(), estimate));
+                            }
+                            return renderSlips(plan.distinctSlips, context, DEFAULT_MAX_IN_FLIGHT_SLIPS)
+                                    .collectList()
+                                    .map(images -> new PdfGenerationResult(plan.expand(images), context.getTemplate(),
+                                            context, slips, plan.getRendersSaved(), plan.getFirstSlipIndexes(), estimate));
+                        }));
+    }
 
-        return Flux.fromIterable(partitionedNumberSets)
-                .parallel()
-                .runOn(Schedulers.parallel())
-                .map(chunk -> createDetachedMarkedImage(chunk, template, baseImage))
-                .sequential()
-                .collectList();
+    /**
+     * Estimate a job without rendering anything, e.g. to show its expected cost before it starts.
+     */
+    public Mono<BetslipJobEstimate> estimateJob(List<int[]> allNumberSets, String stateName, String gameName,
+                                                BetslipRenderMode renderMode) {
+        return createRenderContext(stateName, gameName, renderMode, null)
+                .flatMap(context -> partitionSlips(allNumberSets, context)
+                        .map(slips -> estimateJob(slips.size(),
+                                SlipDeduplicator.plan(slips, context.getGlobalOptionIndex()).distinctSlips.size(), context)));
     }
 
-    private BufferedImage createDetachedMarkedImage(List<int[]> numberSetsForSlip, BetslipTemplate template, BufferedImage baseImage) {
-        BufferedImage newImage = new BufferedImage(baseImage.getWidth(), baseImage.getHeight(), baseImage.getType());
-        java.awt.Graphics2D g2d = newImage.createGraphics();
-        g2d.drawImage(baseImage, 0, 0, null);
-        g2d.setColor(java.awt.Color.BLACK);
+    private static BetslipJobEstimate estimateJob(int slipCount, int distinctSlipCount, BetslipRenderContext context) {
+        return BetslipJobEstimate.estimate(slipCount, distinctSlipCount, context.getTargetWidth(), context.getTargetHeight(),
+                context.getRenderMode(), canvasBytesPerPixel(context.getSlipBaseImage()), DEFAULT_MAX_IN_FLIGHT_SLIPS,
+                BetslipJobEstimate.availableHeapBytes());
+    }
 
-        int markWidth = template.getMark().getWidth();
-        int markHeight = template.getMark().getHeight();
-
-        for (int i = 0; i < numberSetsForSlip.size(); i++) {
-            List<Integer> numbers = Arrays.stream(numberSetsForSlip.get(i)).boxed().collect(Collectors.toList());
-            if (i < template.getPlayPanels().size()) {
-                PlayPanel panel = template.getPlayPanels().get(i);
-                panel.getMainNumbers().forEach((numberKey, coordinate) -> {
-                    if (numbers.contains(Integer.parseInt(numberKey))) {
-                        int x = coordinate.getX() - markWidth / 2;
-                        int y = coordinate.getY() - markHeight / 2;
-                        g2d.fillRect(x, y, markWidth, markHeight);
-                    }
-                });
-            }
-        }
-        
-        // Mark global options (e.g., Cash, Annuity, etc.)
-        if (template.getGlobalOptions() != null && !template.getGlobalOptions().isEmpty() && cachedGlobalOptionSelection != null) {
-            markGlobalOptions(g2d, template, cachedGlobalOptionSelection);
+    /**
+     * Color slips are canvases of the base image's type, so they take as many bytes per pixel as it does.
+     */
+    private static int canvasBytesPerPixel(BufferedImage baseImage) {
+        long pixels = (long) baseImage.getWidth() * baseImage.getHeight();
+        return (int) Math.max(1, (BaseImageCache.sizeInBytes(baseImage) + pixels - 1) / pixels);
+    }
+
+    /**
+     * Render slips as an ordered stream instead of collecting them into a list.
+     * At most {@code maxInFlight} full-resolution slips are being rendered or waiting
+     * for the subscriber at any time, so memory stays flat regardless of ticket count
+     * as long as the subscriber lets go of each slip once it has been written.
+     * Subscribers should pass each slip to {@link #recycle(BufferedImage)} when done with
+     * it so its raster is reused for a later slip instead of being garbage collected.
+     *
+     * @param context the render context of an earlier {@link #generatePdf} result
+     * @param slips   the number sets of each slip to render, e.g. a range of that result's slips
+     */
+    public Flux<BufferedImage> streamMarkedImages(BetslipRenderContext context, List<List<int[]>> slips, int maxInFlight) {
+        return renderSlips(slips, context, maxInFlight);
+    }
+
+    /**
+     * Write a slip stream to a PDF, appending each page as soon as its slips have arrived.
+     * The document is backed by a scratch file, so heap use stays bounded by the render stage's
+     * in-flight limit rather than growing with the page count. The target file is only written
+     * once every slip has arrived. Slips are compressed in parallel and their pages appended in
+     * slip order.
+     *
+     * @param encoding    how color slips are compressed; {@link PdfImageEncoding#JPEG} trades exact
+     *                    pixels for much smaller files, grayscale and bilevel slips are always lossless
+     * @param estimate    the job's estimate, which sets how many slips are encoded at once and how much
+     *                    of the document is buffered in memory; null uses the defaults
+     * @param afterEncode called with each slip once it is encoded, e.g. {@link #recycle} for streamed
+     *                    canvases the caller no longer needs
+     * @return the number of pages written
+     */
+    public Mono<Integer> writePdf(Flux<BufferedImage> slips, File target, PdfImageEncoding encoding,
+                                  BetslipJobEstimate estimate, Consumer<BufferedImage> afterEncode) {
+        int encodeParallelism = estimate != null ? estimate.getMaxInFlightSlips() : DEFAULT_MAX_IN_FLIGHT_SLIPS;
+        long maxMainMemoryBytes = estimate != null
+                ? estimate.getStrategy().getPdfMainMemoryBytes()
+                : BetslipJobStrategy.IN_MEMORY.getPdfMainMemoryBytes();
+        return PdfPageAssembler.write(slips, target, encoding, encodeParallelism, maxMainMemoryBytes, afterEncode);
+    }
+
+    /**
+     * Return a streamed slip's raster to the pool once it has been fully consumed.
+     * The slip must not be used afterwards.
+     */
+    public void recycle(BufferedImage slip) {
+        // Scanner-ready slips are small 1-bit images rendered from scratch, so they are not pooled
+        if (slip.getType() != BufferedImage.TYPE_BYTE_BINARY) {
+            rasterPool.release(slip);
         }
-        
-        g2d.dispose();
-        return newImage;
+    }
+
+    /**
+     * Let go of the idle canvases kept for reuse. Call once the slips of a job are no longer
+     * being read, so full-size canvases are not held for the life of the application.
+     */
+    public void clearRecycledSlips() {
+        rasterPool.clear();
     }
 
     public Mono<ScaledPdfGenerationResult> generateScaledPdf(List<int[]> allNumberSets, String stateName, String gameName, int targetWidth, int targetHeight) {
-        // Clear any cached selection from previous generation
-        cachedGlobalOptionSelection = null;
-        
-        return Mono.fromCallable(() -> loadTemplate(stateName, gameName))
-                .subscribeOn(Schedulers.boundedElastic())
-                .flatMap(templateOptional -> {
-                    if (templateOptional.isEmpty()) {
-                        return Mono.error(new IOException("Betslip template not found for " + gameName));
+        return createScaledRenderContext(stateName, gameName, targetWidth, targetHeight)
+                .flatMap(context -> partitionSlips(allNumberSets, context)
+                        .flatMap(slips -> {
+                            SlipDeduplicator.Plan plan = SlipDeduplicator.plan(slips, context.getGlobalOptionIndex());
+                            return renderSlips(plan.distinctSlips, context, DEFAULT_MAX_IN_FLIGHT_SLIPS)
+                                    .collectList()
+                                    .map(images -> new ScaledPdfGenerationResult(plan.expand(images), context.getTemplate(),
+                                            context.getScaleFactorX(), context.getScaleFactorY(), targetWidth, targetHeight));
+                        }));
+    }
+
+    private Mono<BetslipRenderContext> createRenderContext(String stateName, String gameName, BetslipRenderMode renderMode,
+                                                           String globalOption) {
+        return loadTemplateEntry(stateName, gameName)
+                .map(entry -> {
+                    try {
+                        return BetslipRenderContext.atNativeSize(entry, baseImageCache.get(entry.template.getImagePath()),
+                                resolveGlobalOption(entry.template, stateName, gameName, globalOption), renderMode);
+                    } catch (IOException e) {
+                        throw Exceptions.propagate(e);
                     }
-                    return Mono.just(templateOptional.get());
-                })
-                .flatMap(template -> {
+                });
+    }
+
+    private Mono<BetslipRenderContext> createScaledRenderContext(String stateName, String gameName, int targetWidth, int targetHeight) {
+        return loadTemplateEntry(stateName, gameName)
+                .map(entry -> {
                     try {
-                        // Get global option selection once before processing any images
-                        if (template.getGlobalOptions() != null && !template.getGlobalOptions().isEmpty()) {
-                            cachedGlobalOptionSelection = getSelectedGlobalOption(template);
-                        }
-                        
-                        BufferedImage baseImage = ImageIO.read(new File(template.getImagePath()));
-                        float scaleFactorX = (float) targetWidth / baseImage.getWidth();
-                        float scaleFactorY = (float) targetHeight / baseImage.getHeight();
-                        
-                        return createMultiPanelScaledMarkedImages(allNumberSets, template, baseImage, scaleFactorX, scaleFactorY, targetWidth, targetHeight)
-                                .map(images -> new ScaledPdfGenerationResult(images, template, scaleFactorX, scaleFactorY, targetWidth, targetHeight));
+                        String imagePath = entry.template.getImagePath();
+                        return BetslipRenderContext.atTargetSize(entry, baseImageCache.get(imagePath),
+                                baseImageCache.getScaled(imagePath, targetWidth, targetHeight),
+                                resolveGlobalOption(entry.template, stateName, gameName, null), BetslipRenderMode.COLOR);
                     } catch (IOException e) {
-                        return Mono.error(e);
+                        throw Exceptions.propagate(e);
                     }
                 });
     }
 
-    private Mono<List<BufferedImage>> createMultiPanelScaledMarkedImages(List<int[]> allNumberSets, BetslipTemplate template, BufferedImage baseImage, 
-                                                                        float scaleFactorX, float scaleFactorY, int targetWidth, int targetHeight) {
-        int panelsPerSlip = template.getPlayPanels().size();
+    /**
+     * Decide the global option once, before any slip is rendered. This never prompts:
+     * interactive callers ask the user up front and pass the answer in.
+     */
+    private String resolveGlobalOption(BetslipTemplate template, String stateName, String gameName, String requestedOption) {
+        if (template.getGlobalOptions() == null || template.getGlobalOptions().isEmpty()) {
+            return null;
+        }
+        if (requestedOption != null) {
+            return requestedOption.trim();
+        }
+
+        // A saved default only counts while the template still offers that option
+        Optional<String> savedDefault = globalOptionPreferences.getDefault(stateName, gameName)
+                .flatMap(saved -> template.getGlobalOptions().stream()
+                        .map(option -> option.getName().trim())
+                        .filter(name -> name.equalsIgnoreCase(saved))
+                        .findFirst());
+        if (savedDefault.isPresent()) {
+            log.debug("Using saved global option: {}", savedDefault.get());
+            return savedDefault.get();
+        }
+
+        String optionName = template.getGlobalOptions().get(0).getName().trim();
+        log.debug("Auto-selecting global option: {}", optionName);
+        return optionName;
+    }
+
+    /**
+     * @return the trimmed names of the template's global options, empty if it has none or no template exists
+     */
+    public List<String> getGlobalOptionNames(String stateName, String gameName) {
+        return templateRegistry.find(stateName, gameName)
+                .map(entry -> entry.template.getGlobalOptions())
+                .map(options -> options.stream().map(option -> option.getName().trim()).collect(Collectors.toList()))
+                .orElse(Collections.emptyList());
+    }
+
+    public Optional<String> getDefaultGlobalOption(String stateName, String gameName) {
+        return globalOptionPreferences.getDefault(stateName, gameName);
+    }
+
+    public void saveDefaultGlobalOption(String stateName, String gameName, String optionName) {
+        globalOptionPreferences.saveDefault(stateName, gameName, optionName);
+    }
+
+    private Flux<BufferedImage> renderSlips(List<List<int[]>> slips, BetslipRenderContext context, int maxInFlight) {
+        // Render in parallel but emit in ticket order, never holding more than maxInFlight slips
+        return Flux.fromIterable(slips)
+                .flatMapSequential(chunk -> Mono.fromCallable(() -> renderSlip(chunk, context))
+                        .subscribeOn(Schedulers.parallel()), maxInFlight, 1);
+    }
+
+    private BufferedImage renderSlip(List<int[]> numberSetsForSlip, BetslipRenderContext context) {
+        if (context.getRenderMode() == BetslipRenderMode.SCANNER_READY) {
+            return ImageProcessor.renderScannerReadySlip(context.getCompiledTemplate(), numberSetsForSlip,
+                    context.getGlobalOptionIndex(), context.getTargetWidth(), context.getTargetHeight());
+        }
+        return createDetachedMarkedImage(numberSetsForSlip, context);
+    }
+
+    private static Mono<List<List<int[]>>> partitionSlips(List<int[]> allNumberSets, BetslipRenderContext context) {
+        int panelsPerSlip = context.getTemplate().getPlayPanels().size();
         if (panelsPerSlip == 0) {
             return Mono.error(new IOException("Template has no defined panels."));
         }
@@ -187,205 +339,77 @@ public class BetslipGenerationService {
         for (int i = 0; i < allNumberSets.size(); i += panelsPerSlip) {
             partitionedNumberSets.add(allNumberSets.subList(i, Math.min(i + panelsPerSlip, allNumberSets.size())));
         }
-
-        return Flux.fromIterable(partitionedNumberSets)
-                .parallel()
-                .runOn(Schedulers.parallel())
-                .map(chunk -> createScaledDetachedMarkedImage(chunk, template, baseImage, scaleFactorX, scaleFactorY, targetWidth, targetHeight))
-                .sequential()
-                .collectList();
+        return Mono.just(partitionedNumberSets);
     }
 
-    private BufferedImage createScaledDetachedMarkedImage(List<int[]> numberSetsForSlip, BetslipTemplate template, BufferedImage baseImage, 
-                                                         float scaleFactorX, float scaleFactorY, int targetWidth, int targetHeight) {
-        // Create scaled base image
-        BufferedImage scaledImage = new BufferedImage(targetWidth, targetHeight, baseImage.getType());
-        java.awt.Graphics2D g2d = scaledImage.createGraphics();
-        
-        // Enable high-quality rendering
-        g2d.setRenderingHint(java.awt.RenderingHints.KEY_INTERPOLATION, java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.setRenderingHint(java.awt.RenderingHints.KEY_RENDERING, java.awt.RenderingHints.VALUE_RENDER_QUALITY);
-        
-        // Draw scaled base image
-        g2d.drawImage(baseImage, 0, 0, targetWidth, targetHeight, null);
+    private BufferedImage createDetachedMarkedImage(List<int[]> numberSetsForSlip, BetslipRenderContext context) {
+        // Pooled canvas, already reset to the (pre-scaled) base image by a bulk raster copy
+        BufferedImage newImage = rasterPool.acquire(context.getSlipBaseImage());
+        java.awt.Graphics2D g2d = newImage.createGraphics();
         g2d.setColor(java.awt.Color.BLACK);
 
-        // Calculate scaled mark dimensions
-        int scaledMarkWidth = Math.max(1, Math.round(template.getMark().getWidth() * scaleFactorX));
-        int scaledMarkHeight = Math.max(1, Math.round(template.getMark().getHeight() * scaleFactorY));
-
-        // Draw scaled marks
-        for (int i = 0; i < numberSetsForSlip.size(); i++) {
-            List<Integer> numbers = Arrays.stream(numberSetsForSlip.get(i)).boxed().collect(Collectors.toList());
-            if (i < template.getPlayPanels().size()) {
-                PlayPanel panel = template.getPlayPanels().get(i);
-                panel.getMainNumbers().forEach((numberKey, coordinate) -> {
-                    if (numbers.contains(Integer.parseInt(numberKey))) {
-                        // Scale coordinates
-                        int scaledX = Math.round(coordinate.getX() * scaleFactorX) - scaledMarkWidth / 2;
-                        int scaledY = Math.round(coordinate.getY() * scaleFactorY) - scaledMarkHeight / 2;
-                        g2d.fillRect(scaledX, scaledY, scaledMarkWidth, scaledMarkHeight);
-                    }
-                });
-            }
-        }
-        
-        // Mark scaled global options
-        if (template.getGlobalOptions() != null && !template.getGlobalOptions().isEmpty() && cachedGlobalOptionSelection != null) {
-            markScaledGlobalOptions(g2d, template, cachedGlobalOptionSelection, scaleFactorX, scaleFactorY);
-        }
-        
+        // The compiled template is in output coordinates and turns each ticket number straight into its mark
+        CompiledBetslipTemplate compiled = context.getCompiledTemplate();
+        compiled.paintMarks(g2d, numberSetsForSlip);
+
+        // Mark global options (e.g., Cash, Annuity, etc.)
+        compiled.paintGlobalOption(g2d, context.getGlobalOptionIndex());
+
         g2d.dispose();
-        return scaledImage;
-    }
-    
-    private void markScaledGlobalOptions(java.awt.Graphics2D g2d, BetslipTemplate template, String selectedOption, float scaleFactorX, float scaleFactorY) {
-        if (selectedOption == null) {
-            return; // User cancelled selection
-        }
-        
-        for (GlobalOption option : template.getGlobalOptions()) {
-            if (selectedOption.equalsIgnoreCase(option.getName().trim())) {
-                // Scale coordinates and dimensions
-                int scaledX = (int) Math.round((option.getX() - option.getWidth() / 2) * scaleFactorX);
-                int scaledY = (int) Math.round((option.getY() - option.getHeight() / 2) * scaleFactorY);
-                int scaledWidth = Math.max(1, (int) Math.round(option.getWidth() * scaleFactorX));
-                int scaledHeight = Math.max(1, (int) Math.round(option.getHeight() * scaleFactorY));
-                
-                System.out.println("DEBUG: Marking scaled global option '" + option.getName() + "' at (" + scaledX + "," + scaledY + ") size " + scaledWidth + "x" + scaledHeight + " (scale: " + scaleFactorX + "," + scaleFactorY + ")");
-                g2d.fillRect(scaledX, scaledY, scaledWidth, scaledHeight);
-                break; // Only mark one option
-            }
-        }
-    }
-    
-    private void markGlobalOptions(java.awt.Graphics2D g2d, BetslipTemplate template, String selectedOption) {
-        if (selectedOption == null) {
-            return; // User cancelled selection
-        }
-        
-        for (GlobalOption option : template.getGlobalOptions()) {
-            if (selectedOption.equalsIgnoreCase(option.getName().trim())) {
-                int x = (int) (option.getX() - option.getWidth() / 2);
-                int y = (int) (option.getY() - option.getHeight() / 2);
-                int width = (int) option.getWidth();
-                int height = (int) option.getHeight();
-                
-                System.out.println("DEBUG: Marking global option '" + option.getName() + "' at (" + x + "," + y + ") size " + width + "x" + height);
-                g2d.fillRect(x, y, width, height);
-                break; // Only mark one option
-            }
-        }
+        return newImage;
     }
-    
-    private String getSelectedGlobalOption(BetslipTemplate template) {
-        if (template.getGlobalOptions().isEmpty()) {
-            return null;
+
+    /**
+     * The slips of a job too large to keep in memory: each read renders the slip again from
+     * the render context, so callers should drop an image as soon as they are done with it.
+     */
+    private final class OnDemandSlipImages extends AbstractList<BufferedImage> implements RandomAccess {
+        private final SlipDeduplicator.Plan plan;
+        private final BetslipRenderContext context;
+
+        OnDemandSlipImages(SlipDeduplicator.Plan plan, BetslipRenderContext context) {
+            this.plan = plan;
+            this.context = context;
         }
-        
-        if (template.getGlobalOptions().size() == 1) {
-            // If there's only one option, auto-select it
-            String optionName = template.getGlobalOptions().get(0).getName().trim();
-            System.out.println("DEBUG: Auto-selecting single global option: " + optionName);
-            return optionName;
+
+        @Override
+        public BufferedImage get(int index) {
+            return renderSlip(plan.distinctSlips.get(plan.distinctIndexBySlip[index]), context);
         }
-        
-        // Multiple options - prompt user for selection via JavaFX dialog
-        return promptUserForGlobalOption(template.getGlobalOptions());
-    }
-    
-    private String promptUserForGlobalOption(java.util.List<GlobalOption> options) {
-        // This will be called on a background thread, so we need to use Platform.runLater
-        // and use a synchronization mechanism to wait for user selection
-        final String[] selectedOption = {null};
-        final java.util.concurrent.CountDownLatch latch = new java.util.concurrent.CountDownLatch(1);
-        
-        javafx.application.Platform.runLater(() -> {
-            try {
-                java.util.List<String> choices = options.stream()
-                    .map(option -> option.getName().trim())
-                    .collect(java.util.stream.Collectors.toList());
-                
-                javafx.scene.control.ChoiceDialog<String> dialog = new javafx.scene.control.ChoiceDialog<>(choices.get(0), choices);
-                dialog.setTitle("Global Option Selection");
-                dialog.setHeaderText("Multiple global options found on this betslip template:");
-                dialog.setContentText("Please choose which option to mark:");
-                
-                java.util.Optional<String> result = dialog.showAndWait();
-                selectedOption[0] = result.orElse(null);
-                
-            } catch (Exception e) {
-                System.err.println("Error showing global option dialog: " + e.getMessage());
-                e.printStackTrace();
-                // Default to first option if dialog fails
-                selectedOption[0] = options.get(0).getName().trim();
-            } finally {
-                latch.countDown();
-            }
-        });
-        
-        try {
-            // Wait for user selection (with 30 second timeout)
-            if (latch.await(30, java.util.concurrent.TimeUnit.SECONDS)) {
-                System.out.println("DEBUG: User selected global option: " + selectedOption[0]);
-                return selectedOption[0];
-            } else {
-                System.out.println("DEBUG: Selection timeout, defaulting to first option: " + options.get(0).getName().trim());
-                return options.get(0).getName().trim();
-            }
-        } catch (InterruptedException e) {
-            System.err.println("Interrupted while waiting for user selection, defaulting to first option");
-            return options.get(0).getName().trim();
+
+        @Override
+        public int size() {
+            return plan.distinctIndexBySlip.length;
         }
     }
 
-    private Optional<BetslipTemplate> loadTemplate(String stateName, String gameName) {
-        String resourcePath = getResourcePath(stateName, gameName);
-        try (InputStreamReader reader = new InputStreamReader(this.getClass().getResourceAsStream(resourcePath))) {
-            Gson gson = new Gson();
-            return Optional.of(gson.fromJson(reader, BetslipTemplate.class));
-        } catch (Exception e) {
-            System.err.println("Error loading template resource: " + resourcePath);
-            e.printStackTrace();
-            return Optional.empty();
-        }
+    private Mono<BetslipTemplateRegistry.TemplateEntry> loadTemplateEntry(String stateName, String gameName) {
+        return Mono.fromCallable(() -> loadTemplate(stateName, gameName))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(templateOptional -> {
+                    if (templateOptional.isEmpty()) {
+                        return Mono.error(new IOException("Betslip template not found for " + gameName));
+                    }
+                    return Mono.just(templateOptional.get());
+                });
     }
 
-    private String getResourcePath(String stateName, String gameName) {
-        // Try multiple naming conventions
-        String[] possiblePaths = {
-            // Original convention: /images/StateName/GameName.json
-            "/images/" + stateName + "/" + gameName.replaceAll("\\s+", "") + ".json",
-            // Lowercase with hyphen: /images/statename/statename-gamename.json  
-            "/images/" + stateName + "/" + stateName.toLowerCase() + "-" + gameName.toLowerCase().replaceAll("\\s+", "") + ".json",
-            // Just game name: /images/StateName/gamename.json
-            "/images/" + stateName + "/" + gameName.toLowerCase().replaceAll("\\s+", "") + ".json"
-        };
-        
-        for (String path : possiblePaths) {
-            URL resource = this.getClass().getResource(path);
-            if (resource != null) {
-                return path;
-            }
+    private Optional<BetslipTemplateRegistry.TemplateEntry> loadTemplate(String stateName, String gameName) {
+        Optional<BetslipTemplateRegistry.TemplateEntry> entry = templateRegistry.find(stateName, gameName);
+        if (entry.isEmpty()) {
+            log.debug("No template found for State: '{}', Game: '{}'", stateName, gameName);
         }
-        
-        // Default to first convention if none found
-        System.out.println("DEBUG: No template found for State: '" + stateName + "', Game: '" + gameName + "', trying default path: " + possiblePaths[0]);
-        return possiblePaths[0];
+        return entry;
     }
 
     public boolean hasTemplateForGame(String stateName, String gameName) {
-        if (stateName == null || stateName.trim().isEmpty() || gameName == null || gameName.trim().isEmpty()) {
-            return false;
-        }
-        String resourcePath = getResourcePath(stateName, gameName);
-        try {
-            URL resource = this.getClass().getResource(resourcePath);
-            return resource != null;
-        } catch (Exception e) {
-            System.err.println("Error checking for template resource: " + resourcePath);
-            e.printStackTrace();
-            return false;
-        }
+        return templateRegistry.contains(stateName, gameName);
+    }
+
+    /**
+     * Rescan the bundled templates, e.g. after a new template has been added.
+     */
+    public void reloadTemplates() {
+        templateRegistry.reload();
     }
 }
@@ -0,0 +1,212 @@
+package com.example.lottooptionspro.service;
+
+/**
+ * Preflight estimate of a betslip job's peak heap use and running time, worked out from
+ * the slip size, slip count and render mode before anything is rendered, together with
+ * the {@link BetslipJobStrategy} that keeps the job within the heap that is available.
+ */
+public final class BetslipJobEstimate {
+
+    /** Share of the free heap a job may plan to use; the rest is left for the UI and GC headroom. */
+    static final double HEAP_HEADROOM = 0.6;
+
+    /*
+     * Rough cost of one slip pixel on one core, measured on full-size slips saved losslessly.
+     * Saving (converting, compressing and writing) dominates; 1-bit slips compress faster.
+     */
+    static final double RENDER_NANOS_PER_PIXEL = 12.0;
+    static final double SAVE_NANOS_PER_PIXEL = 75.0;
+    static final double SCANNER_READY_SAVE_NANOS_PER_PIXEL = 50.0;
+
+    private final int slipCount;
+    private final int distinctSlipCount;
+    private final int slipWidth;
+    private final int slipHeight;
+    private final long bytesPerSlip;
+    private final long inMemoryPeakBytes;
+    private final long peakBytes;
+    private final long availableBytes;
+    private final BetslipJobStrategy strategy;
+    private final int maxInFlightSlips;
+    private final long expectedMillis;
+
+    private BetslipJobEstimate(int slipCount, int distinctSlipCount, int slipWidth, int slipHeight, long bytesPerSlip,
+                               long inMemoryPeakBytes, long peakBytes, long availableBytes, BetslipJobStrategy strategy,
+                               int maxInFlightSlips, long expectedMillis) {
+        this.slipCount = slipCount;
+        this.distinctSlipCount = distinctSlipCount;
+        this.slipWidth = slipWidth;
+        this.slipHeight = slipHeight;
+        this.bytesPerSlip = bytesPerSlip;
+        this.inMemoryPeakBytes = inMemoryPeakBytes;
+        this.peakBytes = peakBytes;
+        this.availableBytes = availableBytes;
+        this.strategy = strategy;
+        this.maxInFlightSlips = maxInFlightSlips;
+        this.expectedMillis = expectedMillis;
+    }
+
+    /**
+     * Estimate a job and pick the cheapest strategy that fits: keep every distinct slip in memory
+     * if that fits, otherwise render slips on demand, and if even the in-flight slips would be too
+     * much, render one slip at a time and keep the PDF on disk.
+     *
+     * @param bytesPerPixel  size of a pixel of the color slip canvases, e.g. 3 for TYPE_3BYTE_BGR;
+     *                       scanner-ready slips are always 1-bit
+     * @param maxInFlight    how many slips are rendered or encoded at once when streaming
+     * @param availableBytes heap the job can use, see {@link #availableHeapBytes()}
+     */
+    public static BetslipJobEstimate estimate(int slipCount, int distinctSlipCount, int slipWidth, int slipHeight,
+                                              BetslipRenderMode renderMode, int bytesPerPixel, int maxInFlight,
+                                              long availableBytes) {
+        long pixels = (long) slipWidth * slipHeight;
+        long bytesPerSlip = renderMode == BetslipRenderMode.SCANNER_READY
+                ? (long) ((slipWidth + 7) / 8) * slipHeight
+                : pixels * bytesPerPixel;
+        // Black & white previews and saves keep an 8-bit copy of every distinct color slip
+        long convertedBytesPerSlip = renderMode == BetslipRenderMode.SCANNER_READY ? 0 : pixels;
+
+        long inMemoryPeak = distinctSlipCount * (bytesPerSlip + convertedBytesPerSlip)
+                + maxInFlight * bytesPerSlip
+                + BetslipJobStrategy.IN_MEMORY.getPdfMainMemoryBytes();
+        // A slip being rendered or converted plus its copy waiting to be encoded
+        long streamingPeak = 2L * maxInFlight * bytesPerSlip + BetslipJobStrategy.STREAMING.getPdfMainMemoryBytes();
+        long diskBackedPeak = 2L * bytesPerSlip + BetslipJobStrategy.DISK_BACKED.getPdfMainMemoryBytes();
+
+        long budget = (long) (availableBytes * HEAP_HEADROOM);
+        BetslipJobStrategy strategy;
+        long peak;
+        int inFlight;
+        if (inMemoryPeak <= budget) {
+            strategy = BetslipJobStrategy.IN_MEMORY;
+            peak = inMemoryPeak;
+            inFlight = maxInFlight;
+        } else if (streamingPeak <= budget) {
+            strategy = BetslipJobStrategy.STREAMING;
+            peak = streamingPeak;
+            inFlight = maxInFlight;
+        } else {
+            strategy = BetslipJobStrategy.DISK_BACKED;
+            peak = diskBackedPeak;
+            inFlight = 1;
+        }
+
+        // Duplicate slips are rendered once but still written once per page; slips rendered
+        // on demand are rendered again for the save
+        int renders = strategy.rendersOnDemand() ? slipCount : distinctSlipCount;
+        double saveNanosPerPixel = renderMode == BetslipRenderMode.SCANNER_READY
+                ? SCANNER_READY_SAVE_NANOS_PER_PIXEL
+                : SAVE_NANOS_PER_PIXEL;
+        double nanos = pixels * (renders * RENDER_NANOS_PER_PIXEL + slipCount * saveNanosPerPixel);
+        int parallelism = Math.max(1, Math.min(inFlight, Runtime.getRuntime().availableProcessors()));
+        long expectedMillis = (long) (nanos / parallelism / 1_000_000);
+
+        return new BetslipJobEstimate(slipCount, distinctSlipCount, slipWidth, slipHeight, bytesPerSlip,
+                inMemoryPeak, peak, availableBytes, strategy, inFlight, expectedMillis);
+    }
+
+    /**
+     * @return the heap that can still be allocated: the maximum heap less what is in use now
+     */
+    public static long availableHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    public int getSlipCount() {
+        return slipCount;
+    }
+
+    public int getDistinctSlipCount() {
+        return distinctSlipCount;
+    }
+
+    public int getSlipWidth() {
+        return slipWidth;
+    }
+
+    public int getSlipHeight() {
+        return slipHeight;
+    }
+
+    public long getBytesPerSlip() {
+        return bytesPerSlip;
+    }
+
+    /**
+     * @return what the job would need with every distinct slip kept in memory, whichever strategy was chosen
+     */
+    public long getInMemoryPeakBytes() {
+        return inMemoryPeakBytes;
+    }
+
+    /**
+     * @return the expected peak heap use with the chosen strategy
+     */
+    public long getPeakBytes() {
+        return peakBytes;
+    }
+
+    public long getAvailableBytes() {
+        return availableBytes;
+    }
+
+    public BetslipJobStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return how many slips should be rendered or encoded at once with the chosen strategy
+     */
+    public int getMaxInFlightSlips() {
+        return maxInFlightSlips;
+    }
+
+    /**
+     * @return the expected time to generate and save the whole job
+     */
+    public long getExpectedMillis() {
+        return expectedMillis;
+    }
+
+    /**
+     * @return a one-line description of the estimate for the UI
+     */
+    public String getSummary() {
+        String mode;
+        switch (strategy) {
+            case IN_MEMORY:
+                mode = "kept in memory";
+                break;
+            case STREAMING:
+                mode = "rendered on demand";
+                break;
+            default:
+                mode = "rendered one at a time, PDF buffered on disk";
+                break;
+        }
+        return String.format("%d slips (%d distinct), %s: about %s of %s free heap, ~%s to save",
+                slipCount, distinctSlipCount, mode, formatBytes(peakBytes), formatBytes(availableBytes),
+                formatDuration(expectedMillis));
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes >= 1024L * 1024 * 1024) {
+            return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
+        }
+        return String.format("%d MB", Math.max(1, bytes / (1024 * 1024)));
+    }
+
+    private static String formatDuration(long millis) {
+        long seconds = Math.max(1, (millis + 500) / 1000);
+        if (seconds < 120) {
+            return seconds + " s";
+        }
+        return (seconds + 30) / 60 + " min";
+    }
+}
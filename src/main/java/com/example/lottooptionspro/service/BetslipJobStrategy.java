@@ -0,0 +1,33 @@
+package com.example.lottooptionspro.service;
+
+import com.example.lottooptionspro.util.StreamingPdfWriter;
+
+/**
+ * Where a betslip job keeps its slips between generation, preview and save, chosen
+ * before the job starts from its estimated footprint.
+ */
+public enum BetslipJobStrategy {
+    /** Every distinct slip is rendered up front and kept on the heap; fastest to preview and save. */
+    IN_MEMORY(StreamingPdfWriter.DEFAULT_MAIN_MEMORY_BYTES),
+    /** Slips are rendered when a page is previewed or written and dropped again straight after. */
+    STREAMING(StreamingPdfWriter.DEFAULT_MAIN_MEMORY_BYTES),
+    /** As streaming, but the PDF keeps next to nothing on the heap and spills to its scratch file. */
+    DISK_BACKED(4L * 1024 * 1024);
+
+    private final long pdfMainMemoryBytes;
+
+    BetslipJobStrategy(long pdfMainMemoryBytes) {
+        this.pdfMainMemoryBytes = pdfMainMemoryBytes;
+    }
+
+    /**
+     * @return how much heap the PDF writer may use before spilling to its scratch file
+     */
+    public long getPdfMainMemoryBytes() {
+        return pdfMainMemoryBytes;
+    }
+
+    public boolean rendersOnDemand() {
+        return this != IN_MEMORY;
+    }
+}
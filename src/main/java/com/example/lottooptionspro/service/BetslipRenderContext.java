@@ -0,0 +1,120 @@
+package com.example.lottooptionspro.service;
+
+import com.example.lottooptionspro.models.BetslipTemplate;
+import com.example.lottooptionspro.util.CompiledBetslipTemplate;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Immutable state for a single betslip generation request: the template, the compiled
+ * mark tables in output coordinates, the base image, the selected global option, the
+ * scale factors and the render mode. Every slip of the request is rendered from this
+ * context alone, so requests for different games can run concurrently on the same
+ * service instance.
+ */
+public final class BetslipRenderContext {
+
+    private final BetslipTemplate template;
+    private final CompiledBetslipTemplate compiledTemplate;
+    private final BufferedImage baseImage;
+    private final BufferedImage slipBaseImage;
+    private final String globalOption;
+    private final int globalOptionIndex;
+    private final float scaleFactorX;
+    private final float scaleFactorY;
+    private final int targetWidth;
+    private final int targetHeight;
+    private final BetslipRenderMode renderMode;
+
+    private BetslipRenderContext(BetslipTemplate template, CompiledBetslipTemplate compiledTemplate, BufferedImage baseImage,
+                                 BufferedImage slipBaseImage, String globalOption, float scaleFactorX, float scaleFactorY, int targetWidth, int targetHeight,
+                                 BetslipRenderMode renderMode) {
+        this.template = template;
+        this.compiledTemplate = compiledTemplate;
+        this.baseImage = baseImage;
+        this.slipBaseImage = slipBaseImage;
+        this.globalOption = globalOption;
+        this.globalOptionIndex = compiledTemplate.indexOfGlobalOption(globalOption);
+        this.scaleFactorX = scaleFactorX;
+        this.scaleFactorY = scaleFactorY;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.renderMode = renderMode;
+    }
+
+    /**
+     * Context for slips rendered at the base image's native resolution.
+     */
+    public static BetslipRenderContext atNativeSize(BetslipTemplateRegistry.TemplateEntry entry, BufferedImage baseImage, String globalOption,
+                                                    BetslipRenderMode renderMode) {
+        return new BetslipRenderContext(entry.template, entry.compiled, baseImage, baseImage, globalOption,
+                1f, 1f, baseImage.getWidth(), baseImage.getHeight(), renderMode);
+    }
+
+    /**
+     * Context for slips rescaled to the given output size.
+     *
+     * @param scaledBaseImage the base image already rescaled to the target size, shared by every slip
+     */
+    public static BetslipRenderContext atTargetSize(BetslipTemplateRegistry.TemplateEntry entry, BufferedImage baseImage,
+                                                    BufferedImage scaledBaseImage, String globalOption,
+                                                    BetslipRenderMode renderMode) {
+        int targetWidth = scaledBaseImage.getWidth();
+        int targetHeight = scaledBaseImage.getHeight();
+        float scaleFactorX = (float) targetWidth / baseImage.getWidth();
+        float scaleFactorY = (float) targetHeight / baseImage.getHeight();
+        CompiledBetslipTemplate scaled = CompiledBetslipTemplate.compile(entry.template, scaleFactorX, scaleFactorY);
+        return new BetslipRenderContext(entry.template, scaled, baseImage, scaledBaseImage, globalOption,
+                scaleFactorX, scaleFactorY, targetWidth, targetHeight, renderMode);
+    }
+
+    public BetslipTemplate getTemplate() {
+        return template;
+    }
+
+    public CompiledBetslipTemplate getCompiledTemplate() {
+        return compiledTemplate;
+    }
+
+    public BufferedImage getBaseImage() {
+        return baseImage;
+    }
+
+    /**
+     * @return the base image at output size, which every slip starts from
+     */
+    public BufferedImage getSlipBaseImage() {
+        return slipBaseImage;
+    }
+
+    /**
+     * @return the selected global option name, or null when none is marked
+     */
+    public String getGlobalOption() {
+        return globalOption;
+    }
+
+    public int getGlobalOptionIndex() {
+        return globalOptionIndex;
+    }
+
+    public float getScaleFactorX() {
+        return scaleFactorX;
+    }
+
+    public float getScaleFactorY() {
+        return scaleFactorY;
+    }
+
+    public int getTargetWidth() {
+        return targetWidth;
+    }
+
+    public int getTargetHeight() {
+        return targetHeight;
+    }
+
+    public BetslipRenderMode getRenderMode() {
+        return renderMode;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.lottooptionspro.service;
+
+/**
+ * How betslip slips are rasterized.
+ */
+public enum BetslipRenderMode {
+    /** Marks drawn over the full-color base image. */
+    COLOR,
+    /** Marks, global option and scanner marks only, rendered directly to a 1-bit image. */
+    SCANNER_READY
+}
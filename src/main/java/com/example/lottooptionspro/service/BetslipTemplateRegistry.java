@@ -0,0 +1,145 @@
+package com.example.lottooptionspro.service;
+
+import com.example.lottooptionspro.models.BetslipTemplate;
+import com.example.lottooptionspro.util.CompiledBetslipTemplate;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Index of the betslip templates bundled under {@code /images/<State>/*.json}.
+ * The classpath is scanned and every template parsed once at startup; lookups by
+ * (state, game) are then plain map reads. Call {@link #reload()} to pick up new templates.
+ * Each lookup hands out its own copy of the template, rebuilt from the parsed JSON tree,
+ * so callers can never change what later lookups see.
+ */
+@Component
+public class BetslipTemplateRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(BetslipTemplateRegistry.class);
+
+    private static final String TEMPLATE_PATTERN = "classpath*:/images/*/*.json";
+
+    /**
+     * A template together with its compiled lookup tables at native resolution. The template
+     * is a private copy of the registered one; the compiled tables are immutable and shared.
+     */
+    public static class TemplateEntry {
+        public final BetslipTemplate template;
+        public final CompiledBetslipTemplate compiled;
+
+        public TemplateEntry(BetslipTemplate template, CompiledBetslipTemplate compiled) {
+            this.template = template;
+            this.compiled = compiled;
+        }
+    }
+
+    /** A registered template, kept as its JSON tree so every lookup can get a fresh copy. */
+    private static final class RegisteredTemplate {
+        final JsonElement json;
+        final CompiledBetslipTemplate compiled;
+
+        RegisteredTemplate(JsonElement json, CompiledBetslipTemplate compiled) {
+            this.json = json;
+            this.compiled = compiled;
+        }
+    }
+
+    private final Gson gson = new Gson();
+    private volatile Map<String, RegisteredTemplate> templates = Collections.emptyMap();
+
+    public BetslipTemplateRegistry() {
+        reload();
+    }
+
+    /**
+     * Rescan the classpath and atomically replace the registered templates.
+     */
+    public synchronized void reload() {
+        Map<String, RegisteredTemplate> scanned = new HashMap<>();
+        Map<String, RegisteredTemplate> aliases = new HashMap<>();
+
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(TEMPLATE_PATTERN);
+            for (Resource resource : resources) {
+                String[] segments = URLDecoder.decode(resource.getURL().toString(), StandardCharsets.UTF_8).split("/");
+                if (segments.length < 2) continue;
+                String stateName = segments[segments.length - 2];
+                String fileName = segments[segments.length - 1];
+
+                try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+                    JsonElement json = gson.fromJson(reader, JsonElement.class);
+                    BetslipTemplate template = gson.fromJson(json, BetslipTemplate.class);
+                    if (template == null || template.getMark() == null || template.getPlayPanels() == null) {
+                        log.debug("Skipping non-template resource: {}", resource.getDescription());
+                        continue;
+                    }
+                    RegisteredTemplate entry = new RegisteredTemplate(json, CompiledBetslipTemplate.compile(template));
+
+                    // File naming conventions win; the template's own game name is a fallback alias
+                    scanned.put(key(stateName, gameKeyFromFileName(stateName, fileName)), entry);
+                    if (template.getGameName() != null) {
+                        aliases.put(key(stateName, template.getGameName()), entry);
+                    }
+                } catch (Exception e) {
+                    log.warn("Error loading template resource: {}", resource.getDescription(), e);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error scanning for betslip templates", e);
+        }
+
+        aliases.forEach(scanned::putIfAbsent);
+        templates = Collections.unmodifiableMap(scanned);
+        log.debug("Registered {} betslip template keys", scanned.size());
+    }
+
+    public Optional<TemplateEntry> find(String stateName, String gameName) {
+        RegisteredTemplate registered = lookup(stateName, gameName);
+        if (registered == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new TemplateEntry(gson.fromJson(registered.json, BetslipTemplate.class), registered.compiled));
+    }
+
+    public boolean contains(String stateName, String gameName) {
+        return lookup(stateName, gameName) != null;
+    }
+
+    private RegisteredTemplate lookup(String stateName, String gameName) {
+        if (stateName == null || stateName.trim().isEmpty() || gameName == null || gameName.trim().isEmpty()) {
+            return null;
+        }
+        return templates.get(key(stateName, gameName));
+    }
+
+    private static String key(String stateName, String gameName) {
+        return normalize(stateName) + "/" + normalize(gameName);
+    }
+
+    private static String gameKeyFromFileName(String stateName, String fileName) {
+        // Supports GameName.json, gamename.json and statename-gamename.json
+        String name = fileName.substring(0, fileName.length() - ".json".length());
+        String statePrefix = normalize(stateName) + "-";
+        String normalized = normalize(name);
+        return normalized.startsWith(statePrefix) ? normalized.substring(statePrefix.length()) : normalized;
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase().replaceAll("\\s+", "");
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.lottooptionspro.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.prefs.Preferences;
+
+/**
+ * Remembers the last global option (e.g. "Cash" or "Annuity") chosen for each game,
+ * so later generations, including headless and batch runs, can use it without asking.
+ */
+@Component
+public class GlobalOptionPreferences {
+
+    private final Preferences preferences = Preferences.userNodeForPackage(GlobalOptionPreferences.class).node("global-options");
+
+    public Optional<String> getDefault(String stateName, String gameName) {
+        return Optional.ofNullable(preferences.get(key(stateName, gameName), null));
+    }
+
+    public void saveDefault(String stateName, String gameName, String optionName) {
+        if (optionName == null) {
+            preferences.remove(key(stateName, gameName));
+        } else {
+            preferences.put(key(stateName, gameName), optionName);
+        }
+    }
+
+    private static String key(String stateName, String gameName) {
+        return (stateName + "." + gameName).toLowerCase().replaceAll("\\s+", "");
+    }
+}
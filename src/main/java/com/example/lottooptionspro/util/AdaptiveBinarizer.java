@@ -0,0 +1,307 @@
+package com.example.lottooptionspro.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Decides which pixels of a slip photo are ink, for photos a single global threshold cannot
+ * handle, e.g. phone shots with uneven lighting. Works on the image's luminance:
+ * <ul>
+ *     <li>{@link Method#OTSU} picks one threshold from the histogram that best separates ink from paper;</li>
+ *     <li>{@link Method#SAUVOLA} thresholds each pixel against the mean and standard deviation of
+ *     the window around it;</li>
+ *     <li>{@link Method#LOCAL_MEAN} marks pixels clearly darker than the mean of their window.</li>
+ * </ul>
+ * Window sums come from integral images, so each pixel costs the same whatever the window size.
+ * The image is processed in square tiles in parallel; each tile builds the integral image of
+ * itself plus a window-radius margin in buffers reused per thread, so memory stays small even
+ * for very large photos. Has no UI dependencies and can be used headlessly.
+ */
+public final class AdaptiveBinarizer {
+
+    public enum Method {
+        GLOBAL_THRESHOLD("Global threshold"),
+        OTSU("Otsu (automatic)"),
+        SAUVOLA("Sauvola (adaptive)"),
+        LOCAL_MEAN("Local mean (adaptive)");
+
+        private final String displayName;
+
+        Method(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /** Sauvola's sensitivity to local contrast; higher values mark less as ink. */
+    public static final double DEFAULT_SAUVOLA_K = 0.34;
+    /** How much darker than its window's mean a pixel must be to count as ink in local mean mode. */
+    public static final double DEFAULT_MEAN_OFFSET = 0.15;
+
+    private static final double SAUVOLA_DYNAMIC_RANGE = 128.0;
+    private static final int TILE_SIZE = 256;
+    private static final int MIN_BAND_HEIGHT = 64;
+
+    private static final ThreadLocal<long[][]> INTEGRAL_BUFFERS = new ThreadLocal<>();
+
+    private AdaptiveBinarizer() {
+    }
+
+    /**
+     * A window wide enough to span a few printed marks at the image's resolution, so that it
+     * scales with the image: about a twentieth of the shorter side, and always odd.
+     */
+    public static int defaultWindowSize(int width, int height) {
+        return Math.max(15, Math.min(width, height) / 20) | 1;
+    }
+
+    /**
+     * Binarize an image with the method's default parameters.
+     *
+     * @param threshold only used by {@link Method#GLOBAL_THRESHOLD}: channel values below it are ink
+     * @return a TYPE_BYTE_BINARY image with ink black and everything else white
+     */
+    public static BufferedImage binarize(BufferedImage source, Method method, int threshold) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        boolean[] ink = inkMask(source, method, threshold);
+
+        BufferedImage binary = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        byte[] bits = ((DataBufferByte) binary.getRaster().getDataBuffer()).getData();
+        int stride = ((MultiPixelPackedSampleModel) binary.getSampleModel()).getScanlineStride();
+        forEachBand(height, (fromY, toY) -> {
+            for (int y = fromY; y < toY; y++) {
+                for (int byteIndex = 0, x = 0; byteIndex < stride; byteIndex++) {
+                    int packed = 0xFF;
+                    for (int bit = 7; bit >= 0 && x < width; bit--, x++) {
+                        if (ink[y * width + x]) {
+                            packed &= ~(1 << bit);
+                        }
+                    }
+                    bits[y * stride + byteIndex] = (byte) packed;
+                }
+            }
+        });
+        return binary;
+    }
+
+    /**
+     * @return for every pixel in row-major order, whether it is ink
+     */
+    public static boolean[] inkMask(BufferedImage source, Method method, int threshold) {
+        return inkMask(source, method, threshold, defaultWindowSize(source.getWidth(), source.getHeight()),
+                method == Method.LOCAL_MEAN ? DEFAULT_MEAN_OFFSET : DEFAULT_SAUVOLA_K);
+    }
+
+    /**
+     * @param windowSize side of the square window used by the adaptive methods
+     * @param k          Sauvola's k, or the local mean offset as a fraction of the mean
+     */
+    public static boolean[] inkMask(BufferedImage source, Method method, int threshold, int windowSize, double k) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        boolean[] ink = new boolean[width * height];
+
+        if (method == Method.GLOBAL_THRESHOLD) {
+            boolean[] below = BetSlipPreprocessor.thresholdTable(threshold);
+            forEachRgbRow(source, (y, pixels, offset) -> {
+                for (int x = 0; x < width; x++) {
+                    ink[y * width + x] = BetSlipPreprocessor.isBlackish(pixels[offset + x], below);
+                }
+            });
+            return ink;
+        }
+
+        byte[] gray = luminance(source);
+        if (method == Method.OTSU) {
+            int otsu = otsuThreshold(histogram(gray));
+            forEachBand(height, (fromY, toY) -> {
+                for (int i = fromY * width; i < toY * width; i++) {
+                    ink[i] = (gray[i] & 0xFF) <= otsu;
+                }
+            });
+            return ink;
+        }
+
+        int radius = Math.max(1, windowSize / 2);
+        int tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesDown = (height + TILE_SIZE - 1) / TILE_SIZE;
+        IntStream.range(0, tilesAcross * tilesDown).parallel().forEach(tile -> {
+            int tileX = (tile % tilesAcross) * TILE_SIZE;
+            int tileY = (tile / tilesAcross) * TILE_SIZE;
+            thresholdTile(gray, width, height, tileX, tileY, Math.min(tileX + TILE_SIZE, width),
+                    Math.min(tileY + TILE_SIZE, height), radius, method, k, ink);
+        });
+        return ink;
+    }
+
+    /**
+     * Threshold one tile against its local windows. The integral images cover the tile plus a
+     * margin of one window radius, clipped to the image, which is all its windows can reach.
+     */
+    private static void thresholdTile(byte[] gray, int width, int height, int fromX, int fromY, int toX, int toY,
+                                      int radius, Method method, double k, boolean[] ink) {
+        int areaX0 = Math.max(0, fromX - radius);
+        int areaY0 = Math.max(0, fromY - radius);
+        int areaX1 = Math.min(width, toX + radius);
+        int areaY1 = Math.min(height, toY + radius);
+        int stride = areaX1 - areaX0 + 1;
+        int rows = areaY1 - areaY0 + 1;
+
+        long[][] buffers = integralBuffers(stride * rows);
+        long[] sum = buffers[0];
+        long[] sumSquares = buffers[1];
+
+        // Row 0 and column 0 of the integral images are zero
+        Arrays.fill(sum, 0, stride, 0);
+        Arrays.fill(sumSquares, 0, stride, 0);
+        for (int y = areaY0; y < areaY1; y++) {
+            int row = (y - areaY0 + 1) * stride;
+            int above = row - stride;
+            long rowSum = 0;
+            long rowSquares = 0;
+            sum[row] = 0;
+            sumSquares[row] = 0;
+            for (int x = areaX0; x < areaX1; x++) {
+                int value = gray[y * width + x] & 0xFF;
+                rowSum += value;
+                rowSquares += value * value;
+                int i = row + x - areaX0 + 1;
+                sum[i] = sum[above + x - areaX0 + 1] + rowSum;
+                sumSquares[i] = sumSquares[above + x - areaX0 + 1] + rowSquares;
+            }
+        }
+
+        for (int y = fromY; y < toY; y++) {
+            // Window rows [y0, y1) and columns [x0, x1), in integral image coordinates
+            int y0 = Math.max(areaY0, y - radius) - areaY0;
+            int y1 = Math.min(areaY1, y + radius + 1) - areaY0;
+            for (int x = fromX; x < toX; x++) {
+                int x0 = Math.max(areaX0, x - radius) - areaX0;
+                int x1 = Math.min(areaX1, x + radius + 1) - areaX0;
+                int count = (x1 - x0) * (y1 - y0);
+                long windowSum = sum[y1 * stride + x1] - sum[y0 * stride + x1] - sum[y1 * stride + x0] + sum[y0 * stride + x0];
+                double mean = (double) windowSum / count;
+                int value = gray[y * width + x] & 0xFF;
+
+                if (method == Method.SAUVOLA) {
+                    long windowSquares = sumSquares[y1 * stride + x1] - sumSquares[y0 * stride + x1]
+                            - sumSquares[y1 * stride + x0] + sumSquares[y0 * stride + x0];
+                    double variance = Math.max(0, (double) windowSquares / count - mean * mean);
+                    double threshold = mean * (1 + k * (Math.sqrt(variance) / SAUVOLA_DYNAMIC_RANGE - 1));
+                    ink[y * width + x] = value <= threshold;
+                } else {
+                    ink[y * width + x] = value < mean * (1 - k);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the threshold that maximizes the between-class variance of the histogram; values
+     * at or below it form the dark class
+     */
+    public static int otsuThreshold(int[] histogram) {
+        long total = 0;
+        long weightedTotal = 0;
+        for (int value = 0; value < histogram.length; value++) {
+            total += histogram[value];
+            weightedTotal += (long) value * histogram[value];
+        }
+
+        long darkCount = 0;
+        long darkWeighted = 0;
+        double bestVariance = -1;
+        int best = 0;
+        for (int value = 0; value < histogram.length; value++) {
+            darkCount += histogram[value];
+            if (darkCount == 0) continue;
+            long lightCount = total - darkCount;
+            if (lightCount == 0) break;
+            darkWeighted += (long) value * histogram[value];
+            double darkMean = (double) darkWeighted / darkCount;
+            double lightMean = (double) (weightedTotal - darkWeighted) / lightCount;
+            double variance = (double) darkCount * lightCount * (darkMean - lightMean) * (darkMean - lightMean);
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                best = value;
+            }
+        }
+        return best;
+    }
+
+    private static int[] histogram(byte[] gray) {
+        int[] histogram = new int[256];
+        for (byte value : gray) {
+            histogram[value & 0xFF]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * @return the luminance of every pixel, 0 to 255, in row-major order
+     */
+    private static byte[] luminance(BufferedImage source) {
+        int width = source.getWidth();
+        byte[] gray = new byte[width * source.getHeight()];
+        forEachRgbRow(source, (y, pixels, offset) -> {
+            for (int x = 0; x < width; x++) {
+                int rgb = pixels[offset + x];
+                // Rec. 601 weights in fixed point: 77 + 150 + 29 = 256
+                gray[y * width + x] = (byte) ((((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8);
+            }
+        });
+        return gray;
+    }
+
+    private interface RowConsumer {
+        void accept(int y, int[] pixels, int offset);
+    }
+
+    private interface BandConsumer {
+        void accept(int fromY, int toY);
+    }
+
+    /**
+     * Hand every row's RGB values to the consumer, straight from the raster where possible,
+     * with bands of rows processed in parallel.
+     */
+    private static void forEachRgbRow(BufferedImage source, RowConsumer consumer) {
+        int width = source.getWidth();
+        int[] directPixels = BetSlipPreprocessor.directPixels(source);
+        forEachBand(source.getHeight(), (fromY, toY) -> {
+            int[] row = directPixels == null ? new int[width] : null;
+            for (int y = fromY; y < toY; y++) {
+                if (directPixels != null) {
+                    consumer.accept(y, directPixels, y * width);
+                } else {
+                    source.getRGB(0, y, width, 1, row, 0, width);
+                    consumer.accept(y, row, 0);
+                }
+            }
+        });
+    }
+
+    private static void forEachBand(int height, BandConsumer consumer) {
+        int bandHeight = Math.max(MIN_BAND_HEIGHT, height / (Runtime.getRuntime().availableProcessors() * 4) + 1);
+        int bandCount = (height + bandHeight - 1) / bandHeight;
+        IntStream.range(0, bandCount).parallel()
+                .forEach(band -> consumer.accept(band * bandHeight, Math.min((band + 1) * bandHeight, height)));
+    }
+
+    private static long[][] integralBuffers(int size) {
+        long[][] buffers = INTEGRAL_BUFFERS.get();
+        if (buffers == null || buffers[0].length < size) {
+            buffers = new long[][]{new long[size], new long[size]};
+            INTEGRAL_BUFFERS.set(buffers);
+        }
+        return buffers;
+    }
+}
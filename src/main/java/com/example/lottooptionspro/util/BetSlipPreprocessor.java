@@ -0,0 +1,184 @@
+package com.example.lottooptionspro.util;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Cleans up a scanned betslip before it is used as a template image. Pixels whose red, green
+ * and blue are all below the threshold count as blackish:
+ * <ul>
+ *     <li>above {@code distanceFromTop}, blackish pixels left of {@code distanceFromLeft} become
+ *     black and everything else white;</li>
+ *     <li>within {@code distanceFromBottom} of the bottom, blackish pixels become black and the
+ *     rest keep their color;</li>
+ *     <li>everything in between is white.</li>
+ * </ul>
+ * The image is processed in horizontal bands in parallel, straight on int arrays, and the
+ * threshold test is a table lookup per channel, so no objects are created per pixel.
+ * For unevenly lit photos, the blackish test can instead be one of the
+ * {@link AdaptiveBinarizer} methods.
+ */
+public final class BetSlipPreprocessor {
+
+    private static final int BLACK = 0x000000;
+    private static final int WHITE = 0xFFFFFF;
+
+    /** Rows per band below which splitting the work across threads costs more than it saves. */
+    private static final int MIN_BAND_HEIGHT = 64;
+
+    private BetSlipPreprocessor() {
+    }
+
+    /**
+     * @return a new TYPE_INT_RGB image holding the processed slip
+     */
+    public static BufferedImage process(BufferedImage source, int threshold, int distanceFromTop,
+                                        int distanceFromBottom, int distanceFromLeft) {
+        return process(source, AdaptiveBinarizer.Method.GLOBAL_THRESHOLD, threshold,
+                distanceFromTop, distanceFromBottom, distanceFromLeft);
+    }
+
+    /**
+     * @param method    how blackish pixels are found
+     * @param threshold the channel threshold for {@link AdaptiveBinarizer.Method#GLOBAL_THRESHOLD};
+     *                  ignored by the other methods
+     * @return a new TYPE_INT_RGB image holding the processed slip
+     */
+    public static BufferedImage process(BufferedImage source, AdaptiveBinarizer.Method method, int threshold,
+                                        int distanceFromTop, int distanceFromBottom, int distanceFromLeft) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        BufferedImage processed = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] target = ((DataBufferInt) processed.getRaster().getDataBuffer()).getData();
+        boolean[] below = thresholdTable(threshold);
+        // The global threshold is tested inline; the other methods need the whole image first
+        boolean[] ink = method == AdaptiveBinarizer.Method.GLOBAL_THRESHOLD
+                ? null
+                : AdaptiveBinarizer.inkMask(source, method, threshold);
+        int[] directPixels = directPixels(source);
+        int bottomStart = height - distanceFromBottom;
+        int leftEnd = Math.max(0, Math.min(distanceFromLeft, width));
+
+        int bandHeight = Math.max(MIN_BAND_HEIGHT, height / (Runtime.getRuntime().availableProcessors() * 4) + 1);
+        int bandCount = (height + bandHeight - 1) / bandHeight;
+        IntStream.range(0, bandCount).parallel().forEach(band -> {
+            int fromY = band * bandHeight;
+            int toY = Math.min(fromY + bandHeight, height);
+            int[] row = directPixels == null ? new int[width] : null;
+
+            for (int y = fromY; y < toY; y++) {
+                int rowStart = y * width;
+                boolean topRow = y < distanceFromTop;
+                if (!topRow && y < bottomStart) {
+                    Arrays.fill(target, rowStart, rowStart + width, WHITE);
+                    continue;
+                }
+
+                int[] pixels;
+                int offset;
+                if (directPixels != null) {
+                    pixels = directPixels;
+                    offset = rowStart;
+                } else {
+                    source.getRGB(0, y, width, 1, row, 0, width);
+                    pixels = row;
+                    offset = 0;
+                }
+
+                if (topRow) {
+                    for (int x = 0; x < leftEnd; x++) {
+                        boolean blackish = ink != null ? ink[rowStart + x] : isBlackish(pixels[offset + x], below);
+                        target[rowStart + x] = blackish ? BLACK : WHITE;
+                    }
+                    Arrays.fill(target, rowStart + leftEnd, rowStart + width, WHITE);
+                } else {
+                    for (int x = 0; x < width; x++) {
+                        int rgb = pixels[offset + x];
+                        boolean blackish = ink != null ? ink[rowStart + x] : isBlackish(rgb, below);
+                        target[rowStart + x] = blackish ? BLACK : rgb & WHITE;
+                    }
+                }
+            }
+        });
+        return processed;
+    }
+
+    /**
+     * Copy an image into the int RGB layout {@link #process} reads directly, once, so repeated
+     * processing of the same slip skips the per-row color conversion.
+     *
+     * @return the image itself if it already has that layout
+     */
+    public static BufferedImage toIntRgb(BufferedImage image) {
+        if (directPixels(image) != null) {
+            return image;
+        }
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        int[] target = ((DataBufferInt) converted.getRaster().getDataBuffer()).getData();
+        image.getRGB(0, 0, image.getWidth(), image.getHeight(), target, 0, image.getWidth());
+        return converted;
+    }
+
+    /**
+     * Scale a slip down to at most about {@code maxPixels} pixels, as a cheap stand-in for
+     * tuning the settings interactively. Distances must be scaled by the same factor.
+     *
+     * @return an int RGB copy, or the image itself if it is already small enough and in that layout
+     */
+    public static BufferedImage createPreviewProxy(BufferedImage image, int maxPixels) {
+        double scale = Math.sqrt((double) maxPixels / ((long) image.getWidth() * image.getHeight()));
+        if (scale >= 1) {
+            return toIntRgb(image);
+        }
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage proxy = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = proxy.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g2d.dispose();
+        }
+        return proxy;
+    }
+
+    /**
+     * @return for every channel value, whether it is below the threshold
+     */
+    public static boolean[] thresholdTable(int threshold) {
+        boolean[] below = new boolean[256];
+        for (int value = 0; value < below.length; value++) {
+            below[value] = value < threshold;
+        }
+        return below;
+    }
+
+    public static boolean isBlackish(int rgb, boolean[] below) {
+        return below[(rgb >> 16) & 0xFF] && below[(rgb >> 8) & 0xFF] && below[rgb & 0xFF];
+    }
+
+    /**
+     * @return the pixel array of an int RGB image whose rows are stored back to back, or null
+     * if the image has to be read through {@code getRGB}
+     */
+    static int[] directPixels(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) {
+            return null;
+        }
+        WritableRaster raster = image.getRaster();
+        if (raster.getParent() != null || raster.getDataBuffer().getOffset() != 0
+                || !(image.getSampleModel() instanceof SinglePixelPackedSampleModel)
+                || ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride() != image.getWidth()) {
+            return null;
+        }
+        return ((DataBufferInt) raster.getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.lottooptionspro.util;
+
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Placement of betslips on a printed page: up to {@link #SLIPS_PER_PAGE} slips side by side
+ * on a landscape letter page, centered, with a solid border line at each edge and a dashed
+ * scissor line between neighbouring slips. Shared by the page previews and every PDF writer
+ * so they all produce the same layout.
+ */
+public class BetslipPageLayout {
+
+    public static final PDRectangle PAGE_SIZE = new PDRectangle(PDRectangle.LETTER.getHeight(), PDRectangle.LETTER.getWidth());
+    public static final int SLIPS_PER_PAGE = 3;
+
+    private static final float PAGE_PADDING = 20f;
+    private static final float SCISSOR_LINE_SPACING = 20f;
+
+    private final PDRectangle pageSize;
+    private final int slipCount;
+    private final float imageWidth;
+    private final float imageHeight;
+    private final float startX;
+    private final float yPos;
+    private final float totalContentWidth;
+
+    public BetslipPageLayout(int slipCount, int slipWidth, int slipHeight) {
+        this(slipCount, slipWidth, slipHeight, PAGE_SIZE);
+    }
+
+    public BetslipPageLayout(int slipCount, int slipWidth, int slipHeight, PDRectangle pageSize) {
+        this.pageSize = pageSize;
+        this.slipCount = slipCount;
+
+        float availableWidthForImages = pageSize.getWidth() - (2 * PAGE_PADDING) - ((slipCount - 1) * SCISSOR_LINE_SPACING);
+        float calculatedWidth = availableWidthForImages / slipCount;
+
+        float aspectRatio = (float) slipHeight / slipWidth;
+        float calculatedHeight = calculatedWidth * aspectRatio;
+
+        if (calculatedHeight > pageSize.getHeight() - (2 * PAGE_PADDING)) {
+            this.imageHeight = pageSize.getHeight() - (2 * PAGE_PADDING);
+            this.imageWidth = this.imageHeight / aspectRatio;
+            this.yPos = PAGE_PADDING;
+        } else {
+            this.imageHeight = calculatedHeight;
+            this.imageWidth = calculatedWidth;
+            this.yPos = (pageSize.getHeight() - this.imageHeight) / 2;
+        }
+
+        float totalImagesWidth = slipCount * this.imageWidth;
+        float totalSpacingWidth = Math.max(0, slipCount - 1) * SCISSOR_LINE_SPACING;
+        this.totalContentWidth = totalImagesWidth + totalSpacingWidth;
+        this.startX = (pageSize.getWidth() - this.totalContentWidth) / 2;
+    }
+
+    /**
+     * Split items into consecutive pages of at most {@link #SLIPS_PER_PAGE}.
+     */
+    public static <T> List<List<T>> partition(List<T> items) {
+        List<List<T>> pages = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += SLIPS_PER_PAGE) {
+            pages.add(items.subList(i, Math.min(i + SLIPS_PER_PAGE, items.size())));
+        }
+        return pages;
+    }
+
+    public PDRectangle getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return the left edge of the slip at the given position on the page
+     */
+    public float getSlipX(int index) {
+        return startX + index * (imageWidth + SCISSOR_LINE_SPACING);
+    }
+
+    public float getSlipY() {
+        return yPos;
+    }
+
+    public float getSlipWidth() {
+        return imageWidth;
+    }
+
+    public float getSlipHeight() {
+        return imageHeight;
+    }
+
+    public void drawCutLines(Graphics2D g2d) {
+        drawSolidLine(g2d, startX, PAGE_PADDING, startX, pageSize.getHeight() - PAGE_PADDING);
+        drawSolidLine(g2d, startX + totalContentWidth, PAGE_PADDING, startX + totalContentWidth, pageSize.getHeight() - PAGE_PADDING);
+
+        float currentX = startX + imageWidth;
+        for (int i = 0; i < slipCount - 1; i++) {
+            float lineX = currentX + (SCISSOR_LINE_SPACING / 2);
+            drawDashedLine(g2d, lineX, PAGE_PADDING, lineX, pageSize.getHeight() - PAGE_PADDING);
+            currentX += imageWidth + SCISSOR_LINE_SPACING;
+        }
+    }
+
+    public void drawCutLines(PDPageContentStream contentStream) throws IOException {
+        drawSolidLine(contentStream, startX, PAGE_PADDING, startX, pageSize.getHeight() - PAGE_PADDING);
+        drawSolidLine(contentStream, startX + totalContentWidth, PAGE_PADDING, startX + totalContentWidth, pageSize.getHeight() - PAGE_PADDING);
+
+        float currentX = startX + imageWidth;
+        for (int i = 0; i < slipCount - 1; i++) {
+            float lineX = currentX + (SCISSOR_LINE_SPACING / 2);
+            drawDashedLine(contentStream, lineX, PAGE_PADDING, lineX, pageSize.getHeight() - PAGE_PADDING);
+            currentX += imageWidth + SCISSOR_LINE_SPACING;
+        }
+    }
+
+    private static void drawSolidLine(Graphics2D g2d, float xStart, float yStart, float xEnd, float yEnd) {
+        g2d.setStroke(new BasicStroke(1));
+        g2d.setColor(Color.RED);
+        g2d.drawLine((int) xStart, (int) yStart, (int) xEnd, (int) yEnd);
+    }
+
+    private static void drawDashedLine(Graphics2D g2d, float xStart, float yStart, float xEnd, float yEnd) {
+        g2d.setStroke(new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, new float[]{10, 5}, 0.0f));
+        g2d.setColor(Color.RED);
+        g2d.drawLine((int) xStart, (int) yStart, (int) xEnd, (int) yEnd);
+    }
+
+    private static void drawSolidLine(PDPageContentStream contentStream, float xStart, float yStart, float xEnd, float yEnd) throws IOException {
+        contentStream.setLineDashPattern(new float[]{}, 0); // Solid line
+        contentStream.setStrokingColor(1.0f, 0.0f, 0.0f); // RGB Red (1.0, 0.0, 0.0)
+        contentStream.setLineWidth(1.0f);
+        contentStream.moveTo(xStart, yStart);
+        contentStream.lineTo(xEnd, yEnd);
+        contentStream.stroke();
+    }
+
+    private static void drawDashedLine(PDPageContentStream contentStream, float xStart, float yStart, float xEnd, float yEnd) throws IOException {
+        contentStream.setLineDashPattern(new float[]{10, 5}, 0);
+        contentStream.setStrokingColor(1.0f, 0.0f, 0.0f); // RGB Red (1.0, 0.0, 0.0)
+        contentStream.setLineWidth(1.0f);
+        contentStream.moveTo(xStart, yStart);
+        contentStream.lineTo(xEnd, yEnd);
+        contentStream.stroke();
+        contentStream.setLineDashPattern(new float[]{}, 0);
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.lottooptionspro.util;
+
+import com.example.lottooptionspro.models.BetslipTemplate;
+import com.example.lottooptionspro.models.Coordinate;
+import com.example.lottooptionspro.models.GlobalOption;
+import com.example.lottooptionspro.models.PlayPanel;
+import com.example.lottooptionspro.models.ScannerMark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Graphics2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A betslip template flattened into primitive lookup tables for rendering.
+ * Each panel maps a ticket number straight to the top-left corner of its mark
+ * rectangle, so marking a slip costs one array read per ticket number instead of
+ * walking and parsing every coordinate key of the template.
+ * Instances are immutable and safe to share between rendering threads.
+ */
+public final class CompiledBetslipTemplate {
+
+    private static final Logger log = LoggerFactory.getLogger(CompiledBetslipTemplate.class);
+
+    private static final int NO_MARK = Integer.MIN_VALUE;
+
+    /**
+     * Receives mark rectangles in output coordinates (origin top-left, y down), for
+     * renderers that are not a {@link Graphics2D}, such as a PDF content stream.
+     */
+    @FunctionalInterface
+    public interface RectangleSink {
+        void addRect(int x, int y, int width, int height) throws IOException;
+    }
+
+    private final int markWidth;
+    private final int markHeight;
+    private final int[][] markX; // [panel][number] -> top-left x, NO_MARK when the number is not on the panel
+    private final int[][] markY; // [panel][number] -> top-left y
+    private final String[] globalOptionNames;
+    private final int[][] globalOptionRects; // [option] -> {x, y, width, height}
+    private final int[][] scannerMarkRects;  // [mark] -> {x, y, width, height}
+
+    private CompiledBetslipTemplate(int markWidth, int markHeight, int[][] markX, int[][] markY,
+                                    String[] globalOptionNames, int[][] globalOptionRects, int[][] scannerMarkRects) {
+        this.markWidth = markWidth;
+        this.markHeight = markHeight;
+        this.markX = markX;
+        this.markY = markY;
+        this.globalOptionNames = globalOptionNames;
+        this.globalOptionRects = globalOptionRects;
+        this.scannerMarkRects = scannerMarkRects;
+    }
+
+    /**
+     * Compile a template for rendering at the base image's native resolution.
+     */
+    public static CompiledBetslipTemplate compile(BetslipTemplate template) {
+        return build(template, template.getMark().getWidth(), template.getMark().getHeight(),
+                x -> x,
+                y -> y,
+                option -> new int[]{
+                        (int) (option.getX() - option.getWidth() / 2),
+                        (int) (option.getY() - option.getHeight() / 2),
+                        (int) option.getWidth(),
+                        (int) option.getHeight()
+                },
+                mark -> new int[]{(int) mark.getX(), (int) mark.getY(), (int) mark.getWidth(), (int) mark.getHeight()});
+    }
+
+    /**
+     * Compile a template for rendering onto a base image rescaled by the given factors.
+     * Rounding follows the scaled renderer so marks land on the same pixels as before.
+     */
+    public static CompiledBetslipTemplate compile(BetslipTemplate template, float scaleFactorX, float scaleFactorY) {
+        return build(template,
+                Math.max(1, Math.round(template.getMark().getWidth() * scaleFactorX)),
+                Math.max(1, Math.round(template.getMark().getHeight() * scaleFactorY)),
+                x -> Math.round(x * scaleFactorX),
+                y -> Math.round(y * scaleFactorY),
+                option -> new int[]{
+                        (int) Math.round((option.getX() - option.getWidth() / 2) * scaleFactorX),
+                        (int) Math.round((option.getY() - option.getHeight() / 2) * scaleFactorY),
+                        Math.max(1, (int) Math.round(option.getWidth() * scaleFactorX)),
+                        Math.max(1, (int) Math.round(option.getHeight() * scaleFactorY))
+                },
+                mark -> new int[]{
+                        Math.round((float) mark.getX() * scaleFactorX),
+                        Math.round((float) mark.getY() * scaleFactorY),
+                        Math.max(1, Math.round((float) mark.getWidth() * scaleFactorX)),
+                        Math.max(1, Math.round((float) mark.getHeight() * scaleFactorY))
+                });
+    }
+
+    /**
+     * Build the lookup tables; the two {@code compile} variants differ only in how they map
+     * template coordinates and rectangles to output pixels.
+     *
+     * @param toOutputX maps a number's center x to output pixels, before centering the mark
+     * @param toOutputY maps a number's center y to output pixels, before centering the mark
+     */
+    private static CompiledBetslipTemplate build(BetslipTemplate template, int markWidth, int markHeight,
+                                                 IntUnaryOperator toOutputX, IntUnaryOperator toOutputY,
+                                                 Function<GlobalOption, int[]> optionRect,
+                                                 Function<ScannerMark, int[]> scannerMarkRect) {
+        List<PlayPanel> panels = nullToEmpty(template.getPlayPanels());
+        int[][] markX = new int[panels.size()][];
+        int[][] markY = new int[panels.size()][];
+        List<String> skippedKeys = new ArrayList<>();
+        for (int p = 0; p < panels.size(); p++) {
+            Map<String, Coordinate> numbers = panels.get(p).getMainNumbers();
+            if (numbers == null) numbers = Collections.emptyMap();
+
+            // Each key is parsed once; the tables are sized by the highest number found
+            int[] parsed = new int[numbers.size()];
+            Coordinate[] coordinates = new Coordinate[numbers.size()];
+            int maxNumber = -1;
+            int count = 0;
+            for (Map.Entry<String, Coordinate> entry : numbers.entrySet()) {
+                int number = parseNumber(entry.getKey());
+                if (number < 0) {
+                    skippedKeys.add(entry.getKey());
+                    continue;
+                }
+                parsed[count] = number;
+                coordinates[count++] = entry.getValue();
+                maxNumber = Math.max(maxNumber, number);
+            }
+
+            markX[p] = newTable(maxNumber);
+            markY[p] = newTable(maxNumber);
+            for (int i = 0; i < count; i++) {
+                markX[p][parsed[i]] = toOutputX.applyAsInt(coordinates[i].getX()) - markWidth / 2;
+                markY[p][parsed[i]] = toOutputY.applyAsInt(coordinates[i].getY()) - markHeight / 2;
+            }
+        }
+        if (!skippedKeys.isEmpty()) {
+            log.warn("Skipping non-numeric template keys: {}", skippedKeys);
+        }
+
+        List<GlobalOption> options = nullToEmpty(template.getGlobalOptions());
+        String[] optionNames = new String[options.size()];
+        int[][] optionRects = new int[options.size()][];
+        for (int i = 0; i < options.size(); i++) {
+            GlobalOption option = options.get(i);
+            optionNames[i] = option.getName().trim();
+            optionRects[i] = optionRect.apply(option);
+        }
+
+        List<ScannerMark> scannerMarks = nullToEmpty(template.getScannerMarks());
+        int[][] scannerRects = new int[scannerMarks.size()][];
+        for (int i = 0; i < scannerMarks.size(); i++) {
+            scannerRects[i] = scannerMarkRect.apply(scannerMarks.get(i));
+        }
+
+        return new CompiledBetslipTemplate(markWidth, markHeight, markX, markY, optionNames, optionRects, scannerRects);
+    }
+
+    public int getPanelCount() {
+        return markX.length;
+    }
+
+    public int getMarkWidth() {
+        return markWidth;
+    }
+
+    public int getMarkHeight() {
+        return markHeight;
+    }
+
+    /**
+     * Fill the mark rectangle of every number on the slip, one panel per number set.
+     * Number sets beyond the template's panel count and numbers without a mapped
+     * coordinate are ignored, matching the template-driven renderer.
+     */
+    public void paintMarks(Graphics2D g2d, List<int[]> numberSetsForSlip) {
+        int panels = Math.min(numberSetsForSlip.size(), markX.length);
+        for (int p = 0; p < panels; p++) {
+            int[] xs = markX[p];
+            int[] ys = markY[p];
+            for (int number : numberSetsForSlip.get(p)) {
+                if (number >= 0 && number < xs.length && xs[number] != NO_MARK) {
+                    g2d.fillRect(xs[number], ys[number], markWidth, markHeight);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the index of the global option with the given (trimmed, case-insensitive) name, or -1
+     */
+    public int indexOfGlobalOption(String selectedOption) {
+        if (selectedOption == null) return -1;
+        for (int i = 0; i < globalOptionNames.length; i++) {
+            if (selectedOption.equalsIgnoreCase(globalOptionNames[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void paintGlobalOption(Graphics2D g2d, int optionIndex) {
+        if (optionIndex < 0 || optionIndex >= globalOptionRects.length) return;
+        int[] rect = globalOptionRects[optionIndex];
+        g2d.fillRect(rect[0], rect[1], rect[2], rect[3]);
+    }
+
+    public void paintScannerMarks(Graphics2D g2d) {
+        for (int[] rect : scannerMarkRects) {
+            g2d.fillRect(rect[0], rect[1], rect[2], rect[3]);
+        }
+    }
+
+    /**
+     * Emit the same rectangles as {@link #paintMarks}, {@link #paintGlobalOption} and,
+     * optionally, {@link #paintScannerMarks}.
+     */
+    public void visitMarks(List<int[]> numberSetsForSlip, int optionIndex, boolean includeScannerMarks, RectangleSink sink) throws IOException {
+        int panels = Math.min(numberSetsForSlip.size(), markX.length);
+        for (int p = 0; p < panels; p++) {
+            int[] xs = markX[p];
+            int[] ys = markY[p];
+            for (int number : numberSetsForSlip.get(p)) {
+                if (number >= 0 && number < xs.length && xs[number] != NO_MARK) {
+                    sink.addRect(xs[number], ys[number], markWidth, markHeight);
+                }
+            }
+        }
+        if (optionIndex >= 0 && optionIndex < globalOptionRects.length) {
+            int[] rect = globalOptionRects[optionIndex];
+            sink.addRect(rect[0], rect[1], rect[2], rect[3]);
+        }
+        if (includeScannerMarks) {
+            for (int[] rect : scannerMarkRects) {
+                sink.addRect(rect[0], rect[1], rect[2], rect[3]);
+            }
+        }
+    }
+
+    private static int[] newTable(int maxNumber) {
+        int[] table = new int[maxNumber + 1];
+        Arrays.fill(table, NO_MARK);
+        return table;
+    }
+
+    /**
+     * @return the ticket number a coordinate key stands for, or -1 if it is not a number
+     */
+    private static int parseNumber(String key) {
+        try {
+            return Integer.parseInt(key.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static <T> List<T> nullToEmpty(List<T> list) {
+        return list != null ? list : Collections.emptyList();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.lottooptionspro.util;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Copies AWT images into JavaFX images in bulk. Int ARGB images are handed to the
+ * {@link PixelWriter} in a single call straight from their raster; anything else is converted
+ * a block of rows at a time through a per-thread buffer that is reused between calls. A target
+ * image of the same size can be passed in to be overwritten instead of allocating a new one.
+ * Like {@code SwingFXUtils}, images not yet shown in a scene can be converted on any thread.
+ */
+public final class FxImageBridge {
+
+    private static final int ROWS_PER_BLOCK = 64;
+
+    private static final ThreadLocal<int[]> ROW_BUFFER = new ThreadLocal<>();
+
+    private FxImageBridge() {
+    }
+
+    public static WritableImage toFxImage(BufferedImage image) {
+        return toFxImage(image, null);
+    }
+
+    /**
+     * @param reuse an image to write into if it has the same size as {@code image}; may be null
+     * @return {@code reuse} if it was written into, otherwise a new image
+     */
+    public static WritableImage toFxImage(BufferedImage image, WritableImage reuse) {
+        if (image == null) return null;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        WritableImage target = reuse != null && (int) reuse.getWidth() == width && (int) reuse.getHeight() == height
+                ? reuse
+                : new WritableImage(width, height);
+        PixelWriter writer = target.getPixelWriter();
+
+        int[] pixels = BetSlipPreprocessor.directPixels(image);
+        if (pixels != null && image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            writer.setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+            return target;
+        }
+
+        int blockRows = Math.min(ROWS_PER_BLOCK, height);
+        int[] buffer = rowBuffer(width * blockRows);
+        for (int y = 0; y < height; y += blockRows) {
+            int rows = Math.min(blockRows, height - y);
+            if (pixels != null) {
+                // Int RGB: same layout, only the alpha byte is missing
+                int start = y * width;
+                for (int i = 0, n = rows * width; i < n; i++) {
+                    buffer[i] = pixels[start + i] | 0xFF000000;
+                }
+            } else {
+                image.getRGB(0, y, width, rows, buffer, 0, width);
+            }
+            writer.setPixels(0, y, width, rows, PixelFormat.getIntArgbInstance(), buffer, 0, width);
+        }
+        return target;
+    }
+
+    private static int[] rowBuffer(int size) {
+        int[] buffer = ROW_BUFFER.get();
+        if (buffer == null || buffer.length < size) {
+            buffer = new int[size];
+            ROW_BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.lottooptionspro.util;
+
+import com.example.lottooptionspro.service.BetslipGenerationService;
+import javafx.scene.control.ChoiceDialog;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Asks the user which global option to mark when a betslip template has several.
+ * Must be called on the JavaFX application thread, before betslip generation starts.
+ */
+public class GlobalOptionDialog {
+
+    /**
+     * Settle the global option for a game before its betslips are generated, so the render
+     * pipeline never blocks on the UI. Only templates with several options ask; the answer is
+     * remembered as the game's default.
+     *
+     * @param onChosen run with the chosen option, or with null when there was nothing to choose or
+     *                 the user cancelled, in which case the slips are generated with no option marked
+     */
+    public static void chooseForGame(BetslipGenerationService betslipGenerationService, String stateName,
+                                     String gameName, Consumer<String> onChosen) {
+        List<String> globalOptions = betslipGenerationService.getGlobalOptionNames(stateName, gameName);
+        if (globalOptions.size() <= 1) {
+            onChosen.accept(null);
+            return;
+        }
+
+        String savedDefault = betslipGenerationService.getDefaultGlobalOption(stateName, gameName).orElse(null);
+        String globalOption = choose(globalOptions, savedDefault).orElse(null);
+        if (globalOption != null) {
+            betslipGenerationService.saveDefaultGlobalOption(stateName, gameName, globalOption);
+        }
+        onChosen.accept(globalOption);
+    }
+
+    /**
+     * @return the chosen option name, or empty if the user cancelled
+     */
+    public static Optional<String> choose(List<String> optionNames, String preselected) {
+        String initial = optionNames.contains(preselected) ? preselected : optionNames.get(0);
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(initial, optionNames);
+        dialog.setTitle("Global Option Selection");
+        dialog.setHeaderText("Multiple global options found on this betslip template:");
+        dialog.setContentText("Please choose which option to mark:");
+        return dialog.showAndWait();
+    }
+}
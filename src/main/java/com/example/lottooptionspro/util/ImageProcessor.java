@@ -6,13 +6,28 @@ import com.example.lottooptionspro.models.ScannerMark;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
 public class ImageProcessor {
 
+    /** Rows per band below which splitting the conversion across threads costs more than it saves. */
+    private static final int MIN_BAND_HEIGHT = 64;
+
     /**
      * Converts a marked image to a scanner-ready black and white version.
-     * This method uses a robust, two-step process to ensure all markings are drawn correctly.
+     * Only pure black pixels (the user's markings) and the template's scanner marks are kept.
+     * The source raster is read directly and the result is written as packed bits in a single
+     * pass, split into horizontal bands that are converted in parallel.
      *
      * @param markedColorImage The source image with user markings (unscaled).
      * @param template The betslip template containing the scanner mark coordinates.
@@ -22,48 +37,162 @@ public class ImageProcessor {
         int width = markedColorImage.getWidth();
         int height = markedColorImage.getHeight();
 
-        // Step 1: Create an intermediate color canvas to reliably draw all markings on.
-        BufferedImage intermediateImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = intermediateImage.createGraphics();
+        BufferedImage finalImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        byte[] bits = ((DataBufferByte) finalImage.getRaster().getDataBuffer()).getData();
+        int bitStride = ((MultiPixelPackedSampleModel) finalImage.getSampleModel()).getScanlineStride();
+        int[][] marks = clippedScannerMarks(template.getScannerMarks(), width, height);
 
-        try {
-            // Prepare the canvas with a white background.
-            g2d.setColor(Color.WHITE);
-            g2d.fillRect(0, 0, width, height);
+        int bandHeight = Math.max(MIN_BAND_HEIGHT, height / (Runtime.getRuntime().availableProcessors() * 4) + 1);
+        int bandCount = (height + bandHeight - 1) / bandHeight;
+        IntStream.range(0, bandCount).parallel().forEach(band -> {
+            int fromY = band * bandHeight;
+            int toY = Math.min(fromY + bandHeight, height);
+            convertBand(markedColorImage, fromY, toY, bits, bitStride);
+            for (int[] mark : marks) {
+                for (int y = Math.max(fromY, mark[1]); y < Math.min(toY, mark[3]); y++) {
+                    clearBits(bits, y * bitStride, mark[0], mark[2]);
+                }
+            }
+        });
+        return finalImage;
+    }
 
-            // Set the drawing color to black for all subsequent marks.
-            g2d.setColor(Color.BLACK);
+    /**
+     * Write rows {@code [fromY, toY)} of the binary image: a set bit (white) for every pixel
+     * except pure opaque black ones.
+     */
+    private static void convertBand(BufferedImage source, int fromY, int toY, byte[] bits, int bitStride) {
+        int width = source.getWidth();
+        boolean[] black = new boolean[width];
+        int[] rgbRow = null;
 
-            // Plot the user's number selections onto the canvas by finding pure black pixels.
-            for (int y = 0; y < height; y++) {
+        for (int y = fromY; y < toY; y++) {
+            if (!readBlackRow(source, y, black)) {
+                // Any other layout: one bulk getRGB per row still avoids per-pixel calls
+                if (rgbRow == null) rgbRow = new int[width];
+                source.getRGB(0, y, width, 1, rgbRow, 0, width);
                 for (int x = 0; x < width; x++) {
-                    if (markedColorImage.getRGB(x, y) == Color.BLACK.getRGB()) {
-                        g2d.fillRect(x, y, 1, 1);
+                    black[x] = rgbRow[x] == 0xFF000000;
+                }
+            }
+
+            int rowStart = y * bitStride;
+            for (int byteIndex = 0, x = 0; byteIndex < bitStride; byteIndex++) {
+                int packed = 0xFF;
+                for (int bit = 7; bit >= 0 && x < width; bit--, x++) {
+                    if (black[x]) {
+                        packed &= ~(1 << bit);
                     }
                 }
+                bits[rowStart + byteIndex] = (byte) packed;
             }
+        }
+    }
 
-            // Plot the scanner marks from the template directly onto the same canvas.
-            List<ScannerMark> scannerMarks = template.getScannerMarks();
-            if (scannerMarks != null) {
-                for (ScannerMark mark : scannerMarks) {
-                    g2d.fillRect((int) mark.getX(), (int) mark.getY(), (int) mark.getWidth(), (int) mark.getHeight());
+    /**
+     * Flag the pure black pixels of a row straight from the raster's backing array.
+     *
+     * @return false if the image's layout is not one that can be read directly
+     */
+    private static boolean readBlackRow(BufferedImage source, int y, boolean[] black) {
+        WritableRaster raster = source.getRaster();
+        if (raster.getParent() != null || raster.getDataBuffer().getOffset() != 0) {
+            return false;
+        }
+        int width = source.getWidth();
+        SampleModel sampleModel = source.getSampleModel();
+        switch (source.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB: {
+                if (!(sampleModel instanceof SinglePixelPackedSampleModel)) return false;
+                int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+                int rowStart = y * ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+                // INT_RGB has no alpha, so every pixel is opaque
+                int mask = source.getType() == BufferedImage.TYPE_INT_RGB ? 0x00FFFFFF : 0xFFFFFFFF;
+                int blackPixel = source.getType() == BufferedImage.TYPE_INT_RGB ? 0 : 0xFF000000;
+                for (int x = 0; x < width; x++) {
+                    black[x] = (pixels[rowStart + x] & mask) == blackPixel;
                 }
+                return true;
             }
-        } finally {
-            g2d.dispose();
+            case BufferedImage.TYPE_3BYTE_BGR: {
+                if (!(sampleModel instanceof ComponentSampleModel)) return false;
+                byte[] samples = ((DataBufferByte) raster.getDataBuffer()).getData();
+                int rowStart = y * ((ComponentSampleModel) sampleModel).getScanlineStride();
+                for (int x = 0, i = rowStart; x < width; x++, i += 3) {
+                    black[x] = (samples[i] | samples[i + 1] | samples[i + 2]) == 0;
+                }
+                return true;
+            }
+            default:
+                return false;
         }
+    }
 
-        // Step 2: Create the final binary image and draw the intermediate canvas onto it.
-        // This correctly handles the conversion to the final black-and-white format.
-        BufferedImage finalImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
-        Graphics2D finalG2d = finalImage.createGraphics();
+    /**
+     * Scanner marks as {x0, y0, x1, y1} pixel bounds clipped to the image, truncated to whole
+     * pixels the same way a {@code fillRect} of the mark would be.
+     */
+    private static int[][] clippedScannerMarks(List<ScannerMark> scannerMarks, int width, int height) {
+        if (scannerMarks == null) {
+            return new int[0][];
+        }
+        List<int[]> clipped = new ArrayList<>();
+        for (ScannerMark mark : scannerMarks) {
+            int x = (int) mark.getX();
+            int y = (int) mark.getY();
+            int x0 = Math.max(0, x);
+            int y0 = Math.max(0, y);
+            int x1 = Math.min(width, x + (int) mark.getWidth());
+            int y1 = Math.min(height, y + (int) mark.getHeight());
+            if (x0 < x1 && y0 < y1) {
+                clipped.add(new int[]{x0, y0, x1, y1});
+            }
+        }
+        return clipped.toArray(new int[0][]);
+    }
+
+    /**
+     * Clear (blacken) bits {@code [fromX, toX)} of the packed row starting at {@code rowStart}.
+     */
+    private static void clearBits(byte[] bits, int rowStart, int fromX, int toX) {
+        for (int x = fromX; x < toX; x++) {
+            if ((x & 7) == 0 && x + 8 <= toX) {
+                bits[rowStart + (x >> 3)] = 0;
+                x += 7;
+                continue;
+            }
+            bits[rowStart + (x >> 3)] &= (byte) ~(0x80 >> (x & 7));
+        }
+    }
+
+    /**
+     * Renders a scanner-ready slip straight from the compiled template, without a color canvas.
+     * The result holds only the number marks, the selected global option and the scanner marks
+     * in black on a white 1-bit field, which is what {@link #convertToSelectiveBnW} extracts
+     * from a fully rendered color slip.
+     *
+     * @param compiled The compiled template, in the coordinates of the requested size.
+     * @param numberSetsForSlip One number set per panel of the slip.
+     * @param globalOptionIndex The global option to mark, or -1 for none.
+     * @return A new TYPE_BYTE_BINARY image of the given size.
+     */
+    public static BufferedImage renderScannerReadySlip(CompiledBetslipTemplate compiled, List<int[]> numberSetsForSlip,
+                                                       int globalOptionIndex, int width, int height) {
+        BufferedImage slip = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+
+        // A fresh binary raster is all black; set every bit to get the white field in one pass.
+        Arrays.fill(((DataBufferByte) slip.getRaster().getDataBuffer()).getData(), (byte) 0xFF);
+
+        Graphics2D g2d = slip.createGraphics();
         try {
-            finalG2d.drawImage(intermediateImage, 0, 0, null);
+            g2d.setColor(Color.BLACK);
+            compiled.paintMarks(g2d, numberSetsForSlip);
+            compiled.paintGlobalOption(g2d, globalOptionIndex);
+            compiled.paintScannerMarks(g2d);
         } finally {
-            finalG2d.dispose();
+            g2d.dispose();
         }
-
-        return finalImage;
+        return slip;
     }
 }
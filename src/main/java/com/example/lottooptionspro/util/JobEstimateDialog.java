@@ -0,0 +1,31 @@
+package com.example.lottooptionspro.util;
+
+import com.example.lottooptionspro.service.BetslipJobEstimate;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+
+/**
+ * Reports a betslip job's expected time and memory before it starts, so the user can back out
+ * of a job that will take a long time or has to render its slips on demand.
+ * Must be called on the JavaFX application thread.
+ */
+public class JobEstimateDialog {
+
+    /** Jobs kept in memory and expected to finish within this time start without asking. */
+    static final long CONFIRM_ABOVE_MILLIS = 10_000;
+
+    /**
+     * @return true if the job should go ahead: either it is small enough not to ask, or the
+     * user confirmed it
+     */
+    public static boolean confirm(BetslipJobEstimate estimate) {
+        if (!estimate.getStrategy().rendersOnDemand() && estimate.getExpectedMillis() < CONFIRM_ABOVE_MILLIS) {
+            return true;
+        }
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Large Betslip Job");
+        alert.setHeaderText("This job is expected to take a while.");
+        alert.setContentText(estimate.getSummary() + "\n\nGenerate the betslips now?");
+        return alert.showAndWait().filter(ButtonType.OK::equals).isPresent();
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.lottooptionspro.util;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceCMYK;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.image.CCITTFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Turns slip rasters into PDF image XObjects straight from their sample data.
+ * Slips in the layouts the renderer produces (3-byte BGR, int RGB and 8-bit gray) are
+ * deflated directly from the raster's backing array; anything else goes through PDFBox's
+ * {@link LosslessFactory}. Color slips can optionally be stored as JPEG instead, and 1-bit
+ * scanner-ready slips are always stored as CCITT Group 4.
+ */
+public final class PdfImageEncoder {
+
+    public static final float DEFAULT_JPEG_QUALITY = 0.85f;
+
+    /**
+     * A slip image already compressed into the bytes of a PDF image stream, plus the stream
+     * attributes needed to wrap it. Encoding is the expensive part and can run on any thread;
+     * wrapping it into a document with {@link #createImage(PDDocument, EncodedImage)} is cheap.
+     */
+    public static final class EncodedImage {
+        private final byte[] data;
+        private final COSBase filter;
+        private final int width;
+        private final int height;
+        private final int bitsPerComponent;
+        private final PDColorSpace colorSpace;
+        private final COSBase decodeParms;
+        private final COSBase decode;
+        private final EncodedImage softMask;
+
+        EncodedImage(byte[] data, COSBase filter, int width, int height, int bitsPerComponent, PDColorSpace colorSpace,
+                     COSBase decodeParms, COSBase decode, EncodedImage softMask) {
+            this.data = data;
+            this.filter = filter;
+            this.width = width;
+            this.height = height;
+            this.bitsPerComponent = bitsPerComponent;
+            this.colorSpace = colorSpace;
+            this.decodeParms = decodeParms;
+            this.decode = decode;
+            this.softMask = softMask;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * @return the size of the compressed image data, excluding any soft mask
+         */
+        public int getEncodedLength() {
+            return data.length;
+        }
+    }
+
+    private PdfImageEncoder() {
+    }
+
+    public static PDImageXObject createImage(PDDocument document, BufferedImage image, PdfImageEncoding encoding) throws IOException {
+        return createImage(document, encode(image, encoding));
+    }
+
+    /**
+     * Compress an image without a target document. Thread-safe, so slips can be encoded in
+     * parallel and appended to the document afterwards in page order.
+     */
+    public static EncodedImage encode(BufferedImage image, PdfImageEncoding encoding) throws IOException {
+        PDColorSpace colorSpace = rawColorSpace(image);
+        if (colorSpace != null && !isBilevel(image) && !(encoding == PdfImageEncoding.JPEG && isColor(image))) {
+            return new EncodedImage(deflateSamples(image), COSName.FLATE_DECODE, image.getWidth(), image.getHeight(),
+                    8, colorSpace, null, null, null);
+        }
+
+        // The PDFBox factories only write into a document, so let them encode into a throwaway
+        // one and keep the raw (still compressed) stream bytes
+        try (PDDocument scratch = new PDDocument()) {
+            PDImageXObject pdImage;
+            if (isBilevel(image)) {
+                // Scanner-ready slips: Group 4 fax is the native compression for 1-bit scans
+                pdImage = CCITTFactory.createFromImage(scratch, image);
+            } else if (encoding == PdfImageEncoding.JPEG && isColor(image)) {
+                pdImage = JPEGFactory.createFromImage(scratch, image, DEFAULT_JPEG_QUALITY);
+            } else {
+                pdImage = LosslessFactory.createFromImage(scratch, image);
+            }
+            return capture(pdImage.getCOSObject());
+        }
+    }
+
+    /**
+     * Wrap an encoded image into the given document without recompressing it.
+     */
+    public static PDImageXObject createImage(PDDocument document, EncodedImage encoded) throws IOException {
+        PDImageXObject pdImage = new PDImageXObject(document, new ByteArrayInputStream(encoded.data), encoded.filter,
+                encoded.width, encoded.height, encoded.bitsPerComponent, encoded.colorSpace);
+        COSStream stream = pdImage.getCOSObject();
+        if (encoded.decodeParms != null) {
+            stream.setItem(COSName.DECODE_PARMS, encoded.decodeParms);
+        }
+        if (encoded.decode != null) {
+            stream.setItem(COSName.DECODE, encoded.decode);
+        }
+        if (encoded.softMask != null) {
+            stream.setItem(COSName.SMASK, createImage(document, encoded.softMask));
+        }
+        return pdImage;
+    }
+
+    private static EncodedImage capture(COSStream stream) throws IOException {
+        byte[] data;
+        try (InputStream raw = stream.createRawInputStream()) {
+            data = raw.readAllBytes();
+        }
+
+        COSBase colorSpaceBase = stream.getDictionaryObject(COSName.COLORSPACE);
+        PDColorSpace colorSpace;
+        if (COSName.DEVICERGB.equals(colorSpaceBase)) {
+            colorSpace = PDDeviceRGB.INSTANCE;
+        } else if (COSName.DEVICEGRAY.equals(colorSpaceBase)) {
+            colorSpace = PDDeviceGray.INSTANCE;
+        } else if (COSName.DEVICECMYK.equals(colorSpaceBase)) {
+            colorSpace = PDDeviceCMYK.INSTANCE;
+        } else {
+            // e.g. an ICC profile stream, which would still belong to the throwaway document
+            throw new IOException("Unsupported image color space: " + colorSpaceBase);
+        }
+
+        COSBase softMask = stream.getDictionaryObject(COSName.SMASK);
+        return new EncodedImage(data, stream.getFilters(),
+                stream.getInt(COSName.WIDTH), stream.getInt(COSName.HEIGHT), stream.getInt(COSName.BITS_PER_COMPONENT),
+                colorSpace, stream.getDictionaryObject(COSName.DECODE_PARMS), stream.getDictionaryObject(COSName.DECODE),
+                softMask instanceof COSStream ? capture((COSStream) softMask) : null);
+    }
+
+    private static boolean isBilevel(BufferedImage image) {
+        return image.getType() == BufferedImage.TYPE_BYTE_BINARY && image.getColorModel().getPixelSize() == 1;
+    }
+
+    private static boolean isColor(BufferedImage image) {
+        // JPEG only pays off for color; gray and bilevel slips stay lossless so marks keep hard edges
+        return image.getColorModel().getNumColorComponents() > 1;
+    }
+
+    /**
+     * @return the color space of the samples written by {@link #deflateSamples}, or null when the
+     * image's raster layout is not one that can be read directly
+     */
+    private static PDColorSpace rawColorSpace(BufferedImage image) {
+        if (image.getRaster().getParent() != null || image.getRaster().getDataBuffer().getOffset() != 0
+                || !hasPackedRows(image)) {
+            return null;
+        }
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_INT_RGB:
+                return PDDeviceRGB.INSTANCE;
+            case BufferedImage.TYPE_BYTE_GRAY:
+                return PDDeviceGray.INSTANCE;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean hasPackedRows(BufferedImage image) {
+        SampleModel sampleModel = image.getSampleModel();
+        if (sampleModel instanceof ComponentSampleModel) {
+            ComponentSampleModel componentModel = (ComponentSampleModel) sampleModel;
+            return componentModel.getScanlineStride() == image.getWidth() * componentModel.getPixelStride();
+        }
+        if (sampleModel instanceof SinglePixelPackedSampleModel) {
+            return ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride() == image.getWidth();
+        }
+        return false;
+    }
+
+    /**
+     * Deflate the image as PDF expects it (RGB or gray, 8 bits per component, rows top to bottom),
+     * one row at a time so no full-size intermediate copy is made.
+     */
+    private static byte[] deflateSamples(BufferedImage image) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int components = image.getType() == BufferedImage.TYPE_BYTE_GRAY ? 1 : 3;
+        byte[] row = new byte[width * components];
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(width * height * components / 4);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater, 64 * 1024)) {
+            if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+                int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                for (int y = 0; y < height; y++) {
+                    int rowStart = y * width;
+                    for (int x = 0, i = 0; x < width; x++) {
+                        int rgb = pixels[rowStart + x];
+                        row[i++] = (byte) (rgb >> 16);
+                        row[i++] = (byte) (rgb >> 8);
+                        row[i++] = (byte) rgb;
+                    }
+                    deflaterOut.write(row);
+                }
+            } else {
+                byte[] samples = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                byte[] grayLevels = components == 1 ? grayLevels(image) : null;
+                for (int y = 0; y < height; y++) {
+                    int rowStart = y * row.length;
+                    if (components == 1) {
+                        for (int i = 0; i < row.length; i++) {
+                            row[i] = grayLevels[samples[rowStart + i] & 0xFF];
+                        }
+                        deflaterOut.write(row);
+                        continue;
+                    }
+                    // BGR in the raster, RGB in the PDF
+                    for (int i = 0; i < row.length; i += 3) {
+                        row[i] = samples[rowStart + i + 2];
+                        row[i + 1] = samples[rowStart + i + 1];
+                        row[i + 2] = samples[rowStart + i];
+                    }
+                    deflaterOut.write(row);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Java's 8-bit gray is linear while PDF's DeviceGray is display gray, so map each sample
+     * through the color model once up front, as {@code getRGB} would for every pixel.
+     */
+    private static byte[] grayLevels(BufferedImage image) {
+        byte[] levels = new byte[256];
+        byte[] sample = new byte[1];
+        for (int v = 0; v < levels.length; v++) {
+            sample[0] = (byte) v;
+            levels[v] = (byte) image.getColorModel().getRGB(sample);
+        }
+        return levels;
+    }
+}
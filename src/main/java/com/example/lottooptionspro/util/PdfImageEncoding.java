@@ -0,0 +1,12 @@
+package com.example.lottooptionspro.util;
+
+/**
+ * How color slip rasters are compressed when they are embedded in a PDF.
+ * 1-bit slips are always stored as CCITT Group 4, whatever the encoding.
+ */
+public enum PdfImageEncoding {
+    /** Flate-compressed raw pixels. Exact, and the right choice for grayscale and bilevel slips. */
+    LOSSLESS,
+    /** DCT (JPEG) compression for color slips. Much smaller and faster to write, slightly lossy. */
+    JPEG
+}
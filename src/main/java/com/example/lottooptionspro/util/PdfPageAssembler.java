@@ -0,0 +1,61 @@
+package com.example.lottooptionspro.util;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes a stream of slips to a PDF in two stages. Compressing each slip image is the
+ * expensive part, so it runs in parallel across cores; a single ordered stage then wraps
+ * the already-compressed images into pages, draws the cut lines and saves the document.
+ * Page order always matches slip order.
+ */
+public final class PdfPageAssembler {
+
+    private PdfPageAssembler() {
+    }
+
+    /**
+     * @param encodeParallelism  how many slips are encoded at once; also bounds how many
+     *                           encoded slips wait for the ordered stage
+     * @param maxMainMemoryBytes heap the document may use before spilling to its scratch file
+     * @param afterEncode        called with each slip once it has been encoded and is no longer needed
+     * @return the number of pages written
+     */
+    public static Mono<Integer> write(Flux<BufferedImage> slips, File target, PdfImageEncoding encoding,
+                                      int encodeParallelism, long maxMainMemoryBytes, Consumer<BufferedImage> afterEncode) {
+        return Mono.using(() -> new StreamingPdfWriter(target, encoding, maxMainMemoryBytes),
+                writer -> slips
+                        .flatMapSequential(slip -> Mono.fromCallable(() -> {
+                            try {
+                                return PdfImageEncoder.encode(slip, encoding);
+                            } finally {
+                                afterEncode.accept(slip);
+                            }
+                        }).subscribeOn(Schedulers.parallel()), encodeParallelism, 1)
+                        .buffer(BetslipPageLayout.SLIPS_PER_PAGE)
+                        // concatMap keeps the writer on one page at a time, in order
+                        .concatMap(pageImages -> Mono.fromCallable(() -> {
+                            writer.appendEncodedPage(pageImages);
+                            return pageImages.size();
+                        }).subscribeOn(Schedulers.boundedElastic()), 1)
+                        .then(Mono.fromCallable(() -> {
+                            writer.finish();
+                            return writer.getPageCount();
+                        }).subscribeOn(Schedulers.boundedElastic())),
+                PdfPageAssembler::closeQuietly);
+    }
+
+    private static void closeQuietly(StreamingPdfWriter writer) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Error closing PDF writer: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.lottooptionspro.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Splits a betslip job into fixed-size PDF volumes (betslips-vol001.pdf, betslips-vol002.pdf, ...)
+ * so each file stays quick to open and print, and writes a CSV manifest of which tickets
+ * went into which file.
+ */
+public final class PdfVolumes {
+
+    private PdfVolumes() {
+    }
+
+    /**
+     * One output file holding slips {@code [fromSlip, toSlip)} of the job.
+     */
+    public static final class Volume {
+        public final int number;
+        public final int fromSlip;
+        public final int toSlip;
+        public final File file;
+
+        Volume(int number, int fromSlip, int toSlip, File file) {
+            this.number = number;
+            this.fromSlip = fromSlip;
+            this.toSlip = toSlip;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Plan the volumes for a job. The volume size is rounded down to whole pages so only the
+     * last volume can end on a partly filled page.
+     *
+     * @param target the file the user chose; volumes and the manifest are named after it
+     */
+    public static List<Volume> plan(int slipCount, int slipsPerVolume, File target) {
+        int perVolume = Math.max(BetslipPageLayout.SLIPS_PER_PAGE,
+                slipsPerVolume / BetslipPageLayout.SLIPS_PER_PAGE * BetslipPageLayout.SLIPS_PER_PAGE);
+        List<Volume> volumes = new ArrayList<>();
+        for (int from = 0, number = 1; from < slipCount; from += perVolume, number++) {
+            volumes.add(new Volume(number, from, Math.min(from + perVolume, slipCount),
+                    new File(target.getParentFile(), String.format("%s-vol%03d.pdf", baseName(target), number))));
+        }
+        return volumes;
+    }
+
+    public static File manifestFile(File target) {
+        return new File(target.getParentFile(), baseName(target) + "-manifest.csv");
+    }
+
+    /**
+     * Write one manifest row per ticket: the volume and file it is in, its slip number in the
+     * whole job, its page in that file, the panel it is marked on and its numbers.
+     *
+     * @param slips the number sets of each slip, or null when only slip images are known,
+     *              in which case one row is written per slip without panel and numbers
+     */
+    public static void writeManifest(File manifest, List<Volume> volumes, List<List<int[]>> slips) throws IOException {
+        try (PrintWriter out = new PrintWriter(manifest, StandardCharsets.UTF_8)) {
+            out.println("volume,file,slip,page,panel,numbers");
+            for (Volume volume : volumes) {
+                for (int slip = volume.fromSlip; slip < volume.toSlip; slip++) {
+                    String prefix = volume.number + "," + volume.file.getName() + "," + (slip + 1) + ","
+                            + ((slip - volume.fromSlip) / BetslipPageLayout.SLIPS_PER_PAGE + 1) + ",";
+                    if (slips == null) {
+                        out.println(prefix + ",");
+                        continue;
+                    }
+                    List<int[]> panels = slips.get(slip);
+                    for (int panel = 0; panel < panels.size(); panel++) {
+                        out.println(prefix + (panel + 1) + "," + Arrays.stream(panels.get(panel))
+                                .mapToObj(String::valueOf)
+                                .collect(Collectors.joining(" ")));
+                    }
+                }
+            }
+        }
+    }
+
+    private static String baseName(File target) {
+        String name = target.getName();
+        return name.toLowerCase().endsWith(".pdf") ? name.substring(0, name.length() - ".pdf".length()) : name;
+    }
+}
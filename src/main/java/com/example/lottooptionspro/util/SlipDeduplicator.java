@@ -0,0 +1,131 @@
+package com.example.lottooptionspro.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds slips that would render identically so each distinct slip is rendered only once.
+ * Two slips are identical when every panel holds the same set of numbers (in any order)
+ * and the same global option is marked.
+ */
+public final class SlipDeduplicator {
+
+    private SlipDeduplicator() {
+    }
+
+    /**
+     * The distinct slips to render and, for every original slip, which distinct render it reuses.
+     */
+    public static final class Plan {
+        public final List<List<int[]>> distinctSlips;
+        public final int[] distinctIndexBySlip;
+
+        Plan(List<List<int[]>> distinctSlips, int[] distinctIndexBySlip) {
+            this.distinctSlips = distinctSlips;
+            this.distinctIndexBySlip = distinctIndexBySlip;
+        }
+
+        public int getRendersSaved() {
+            return distinctIndexBySlip.length - distinctSlips.size();
+        }
+
+        /**
+         * Expand the distinct renders back to one entry per original slip, in slip order.
+         * Duplicate slips share the same instance.
+         */
+        public <T> List<T> expand(List<T> distinctRenders) {
+            List<T> expanded = new ArrayList<>(distinctIndexBySlip.length);
+            for (int index : distinctIndexBySlip) {
+                expanded.add(distinctRenders.get(index));
+            }
+            return expanded;
+        }
+
+        /**
+         * For every original slip, the index of the first slip that renders identically to it.
+         */
+        public int[] getFirstSlipIndexes() {
+            int[] firstSlipByDistinct = new int[distinctSlips.size()];
+            Arrays.fill(firstSlipByDistinct, -1);
+            int[] firstSlipIndexes = new int[distinctIndexBySlip.length];
+            for (int i = 0; i < distinctIndexBySlip.length; i++) {
+                int distinct = distinctIndexBySlip[i];
+                if (firstSlipByDistinct[distinct] < 0) {
+                    firstSlipByDistinct[distinct] = i;
+                }
+                firstSlipIndexes[i] = firstSlipByDistinct[distinct];
+            }
+            return firstSlipIndexes;
+        }
+    }
+
+    public static Plan plan(List<List<int[]>> slips, int globalOptionIndex) {
+        Map<SlipKey, Integer> distinctIndexByKey = new HashMap<>();
+        List<List<int[]>> distinctSlips = new ArrayList<>();
+        int[] distinctIndexBySlip = new int[slips.size()];
+
+        for (int i = 0; i < slips.size(); i++) {
+            SlipKey key = new SlipKey(canonicalize(slips.get(i), globalOptionIndex));
+            Integer existing = distinctIndexByKey.putIfAbsent(key, distinctSlips.size());
+            if (existing == null) {
+                distinctIndexBySlip[i] = distinctSlips.size();
+                distinctSlips.add(slips.get(i));
+            } else {
+                distinctIndexBySlip[i] = existing;
+            }
+        }
+        return new Plan(distinctSlips, distinctIndexBySlip);
+    }
+
+    /**
+     * Flatten a slip into [option, panelCount, size0, sorted distinct numbers of panel 0, size1, ...].
+     */
+    private static int[] canonicalize(List<int[]> slip, int globalOptionIndex) {
+        int length = 2;
+        for (int[] panel : slip) {
+            length += 1 + panel.length;
+        }
+
+        int[] canonical = new int[length];
+        canonical[0] = globalOptionIndex;
+        canonical[1] = slip.size();
+        int pos = 2;
+        for (int[] panel : slip) {
+            int[] sorted = panel.clone();
+            Arrays.sort(sorted);
+            int sizePos = pos++;
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    canonical[pos++] = sorted[i];
+                    distinct++;
+                }
+            }
+            canonical[sizePos] = distinct;
+        }
+        return Arrays.copyOf(canonical, pos);
+    }
+
+    private static final class SlipKey {
+        private final int[] canonical;
+        private final int hash;
+
+        SlipKey(int[] canonical) {
+            this.canonical = canonical;
+            this.hash = Arrays.hashCode(canonical);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SlipKey && Arrays.equals(canonical, ((SlipKey) o).canonical);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.lottooptionspro.util;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.WritableRaster;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of reusable slip canvases. A canvas handed out by {@link #acquire(BufferedImage)}
+ * already holds a copy of the base image, made by bulk-copying the base image's
+ * {@link DataBuffer} banks rather than compositing it with {@code Graphics2D.drawImage}.
+ * Canvases are interchangeable between base images of the same size and type, so one
+ * pool can serve every template. Thread-safe.
+ */
+public class SlipRasterPool {
+
+    private final int maxIdlePerShape;
+    private final Map<String, BlockingQueue<BufferedImage>> idleCanvases = new ConcurrentHashMap<>();
+
+    public SlipRasterPool(int maxIdlePerShape) {
+        this.maxIdlePerShape = maxIdlePerShape;
+    }
+
+    /**
+     * Get a canvas of the base image's size and type, reset to the base image's pixels.
+     */
+    public BufferedImage acquire(BufferedImage baseImage) {
+        BufferedImage canvas = null;
+        String shape = shapeKey(baseImage);
+        if (shape != null) {
+            BlockingQueue<BufferedImage> idle = idleCanvases.get(shape);
+            if (idle != null) {
+                canvas = idle.poll();
+            }
+        }
+        if (canvas == null) {
+            canvas = createCanvas(baseImage);
+        }
+        reset(canvas, baseImage);
+        return canvas;
+    }
+
+    /**
+     * Hand a canvas back once its consumer has finished with it. The caller must not
+     * touch the image afterwards. Canvases beyond the idle limit are left to the GC.
+     */
+    public void release(BufferedImage canvas) {
+        String shape = shapeKey(canvas);
+        if (shape == null) return;
+        idleCanvases.computeIfAbsent(shape, key -> new ArrayBlockingQueue<>(maxIdlePerShape)).offer(canvas);
+    }
+
+    /**
+     * Drop every idle canvas, e.g. once the job that used them has finished. Canvases still
+     * in use can be released again afterwards.
+     */
+    public void clear() {
+        idleCanvases.clear();
+    }
+
+    /**
+     * Overwrite every pixel of the canvas with the base image.
+     */
+    public static void reset(BufferedImage canvas, BufferedImage baseImage) {
+        if (!copyBanks(baseImage.getRaster(), canvas.getRaster())) {
+            Graphics2D g2d = canvas.createGraphics();
+            g2d.setComposite(AlphaComposite.Src);
+            g2d.drawImage(baseImage, 0, 0, null);
+            g2d.dispose();
+        }
+    }
+
+    private static BufferedImage createCanvas(BufferedImage baseImage) {
+        if (baseImage.getType() != BufferedImage.TYPE_CUSTOM) {
+            return new BufferedImage(baseImage.getWidth(), baseImage.getHeight(), baseImage.getType());
+        }
+        WritableRaster raster = baseImage.getRaster().createCompatibleWritableRaster();
+        return new BufferedImage(baseImage.getColorModel(), raster, baseImage.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Copy the raw sample arrays when both rasters share the exact same memory layout.
+     *
+     * @return false when the layouts differ and the caller must fall back to compositing
+     */
+    private static boolean copyBanks(WritableRaster source, WritableRaster target) {
+        if (source.getParent() != null || target.getParent() != null
+                || source.getSampleModelTranslateX() != 0 || source.getSampleModelTranslateY() != 0
+                || !source.getSampleModel().equals(target.getSampleModel())) {
+            return false;
+        }
+
+        DataBuffer from = source.getDataBuffer();
+        DataBuffer to = target.getDataBuffer();
+        if (from.getClass() != to.getClass() || from.getNumBanks() != to.getNumBanks() || from.getSize() != to.getSize()) {
+            return false;
+        }
+
+        for (int bank = 0; bank < from.getNumBanks(); bank++) {
+            if (from.getOffsets()[bank] != 0 || to.getOffsets()[bank] != 0) {
+                return false;
+            }
+        }
+
+        for (int bank = 0; bank < from.getNumBanks(); bank++) {
+            if (from instanceof DataBufferByte) {
+                byte[] src = ((DataBufferByte) from).getData(bank);
+                System.arraycopy(src, 0, ((DataBufferByte) to).getData(bank), 0, src.length);
+            } else if (from instanceof DataBufferInt) {
+                int[] src = ((DataBufferInt) from).getData(bank);
+                System.arraycopy(src, 0, ((DataBufferInt) to).getData(bank), 0, src.length);
+            } else if (from instanceof DataBufferUShort) {
+                short[] src = ((DataBufferUShort) from).getData(bank);
+                System.arraycopy(src, 0, ((DataBufferUShort) to).getData(bank), 0, src.length);
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String shapeKey(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_CUSTOM) {
+            return null; // Not safely interchangeable, always allocate
+        }
+        return image.getType() + ":" + image.getWidth() + "x" + image.getHeight();
+    }
+}
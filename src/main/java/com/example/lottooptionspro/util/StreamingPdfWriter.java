@@ -0,0 +1,138 @@
+package com.example.lottooptionspro.util;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a betslip PDF one page at a time, backed by a PDFBox scratch file. Page content
+ * and embedded images are written to the scratch file as each page is appended, so only a
+ * small amount of document structure stays on the heap however many pages there are.
+ * Callers can drop each slip image as soon as its page has been appended.
+ * <p>
+ * Nothing is written to the target file until {@link #finish()}; closing the writer without
+ * finishing discards the document. Not thread-safe: append pages from one thread at a time.
+ */
+public class StreamingPdfWriter implements Closeable {
+
+    /** Heap used for document streams before they spill over to the scratch file. */
+    public static final long DEFAULT_MAIN_MEMORY_BYTES = 32L * 1024 * 1024;
+
+    private final File target;
+    private final PDDocument document;
+    private final PdfImageEncoding encoding;
+    private int pageCount = 0;
+
+    public StreamingPdfWriter(File target) {
+        this(target, PdfImageEncoding.LOSSLESS);
+    }
+
+    public StreamingPdfWriter(File target, PdfImageEncoding encoding) {
+        this(target, encoding, DEFAULT_MAIN_MEMORY_BYTES);
+    }
+
+    public StreamingPdfWriter(File target, PdfImageEncoding encoding, long maxMainMemoryBytes) {
+        this.target = target;
+        this.encoding = encoding;
+        this.document = new PDDocument(MemoryUsageSetting.setupMixed(maxMainMemoryBytes));
+    }
+
+    /**
+     * @return the document being written, for creating resources shared between pages
+     */
+    public PDDocument getDocument() {
+        return document;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public PdfImageEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Append one page holding up to {@link BetslipPageLayout#SLIPS_PER_PAGE} slip images.
+     */
+    public void appendPage(List<BufferedImage> pageImages) throws IOException {
+        List<PdfImageEncoder.EncodedImage> encoded = new ArrayList<>(pageImages.size());
+        for (BufferedImage image : pageImages) {
+            encoded.add(PdfImageEncoder.encode(image, encoding));
+        }
+        appendEncodedPage(encoded);
+    }
+
+    /**
+     * Append one page of slips that were already encoded, possibly on other threads.
+     */
+    public void appendEncodedPage(List<PdfImageEncoder.EncodedImage> pageImages) throws IOException {
+        PdfImageEncoder.EncodedImage firstImage = pageImages.get(0);
+        BetslipPageLayout layout = new BetslipPageLayout(pageImages.size(), firstImage.getWidth(), firstImage.getHeight());
+
+        PDPage page = new PDPage(layout.getPageSize());
+        document.addPage(page);
+        try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+            // Pass 1: Draw the images
+            for (int i = 0; i < pageImages.size(); i++) {
+                PDImageXObject pdImage = PdfImageEncoder.createImage(document, pageImages.get(i));
+                contentStream.drawImage(pdImage, layout.getSlipX(i), layout.getSlipY(), layout.getSlipWidth(), layout.getSlipHeight());
+            }
+
+            // Pass 2: Draw the border and scissor lines
+            layout.drawCutLines(contentStream);
+        }
+        pageCount++;
+    }
+
+    /**
+     * Append one page of slips drawn as vector marks over the painter's shared base image.
+     */
+    public void appendVectorPage(VectorSlipPainter painter, List<List<int[]>> pageSlips) throws IOException {
+        BetslipPageLayout layout = new BetslipPageLayout(pageSlips.size(), painter.getSlipWidth(), painter.getSlipHeight());
+
+        PDPage page = new PDPage(layout.getPageSize());
+        document.addPage(page);
+        try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+            for (int i = 0; i < pageSlips.size(); i++) {
+                painter.drawSlip(contentStream, pageSlips.get(i), layout.getSlipX(i), layout.getSlipY(),
+                        layout.getSlipWidth(), layout.getSlipHeight());
+            }
+            layout.drawCutLines(contentStream);
+        }
+        pageCount++;
+    }
+
+    /**
+     * Embed an image in the document so it can be drawn on any page. The pixels are
+     * compressed straight from the raster; there is no intermediate PNG file.
+     */
+    public PDImageXObject embedImage(BufferedImage awtImage) throws IOException {
+        return PdfImageEncoder.createImage(document, awtImage, encoding);
+    }
+
+    /**
+     * Write the finished document to the target file and release the scratch file.
+     */
+    public void finish() throws IOException {
+        try {
+            document.save(target);
+        } finally {
+            document.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+}
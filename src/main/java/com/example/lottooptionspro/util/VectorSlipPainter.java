@@ -0,0 +1,71 @@
+package com.example.lottooptionspro.util;
+
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.util.Matrix;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Draws betslips into a PDF as one shared background image plus filled vector rectangles
+ * for the marks. The background is embedded once per document and referenced by every
+ * slip, so each additional slip only costs a few bytes of path operators instead of a
+ * full raster image.
+ */
+public class VectorSlipPainter {
+
+    private final CompiledBetslipTemplate compiledTemplate;
+    private final PDImageXObject sharedBaseImage;
+    private final int globalOptionIndex;
+    private final boolean includeScannerMarks;
+    private final int slipWidth;
+    private final int slipHeight;
+
+    /**
+     * @param compiledTemplate    mark rectangles in the coordinates of a {@code slipWidth} x {@code slipHeight} slip
+     * @param sharedBaseImage     the background drawn under every slip, or null for a plain white slip
+     * @param includeScannerMarks whether to draw the template's scanner marks, as scanner-ready slips do
+     */
+    public VectorSlipPainter(CompiledBetslipTemplate compiledTemplate, PDImageXObject sharedBaseImage, int globalOptionIndex,
+                             boolean includeScannerMarks, int slipWidth, int slipHeight) {
+        this.compiledTemplate = compiledTemplate;
+        this.sharedBaseImage = sharedBaseImage;
+        this.globalOptionIndex = globalOptionIndex;
+        this.includeScannerMarks = includeScannerMarks;
+        this.slipWidth = slipWidth;
+        this.slipHeight = slipHeight;
+    }
+
+    public int getSlipWidth() {
+        return slipWidth;
+    }
+
+    public int getSlipHeight() {
+        return slipHeight;
+    }
+
+    /**
+     * Draw one slip into the given box on the page (PDF user space, origin bottom-left).
+     */
+    public void drawSlip(PDPageContentStream contentStream, List<int[]> numberSetsForSlip,
+                         float x, float y, float width, float height) throws IOException {
+        if (sharedBaseImage != null) {
+            contentStream.drawImage(sharedBaseImage, x, y, width, height);
+        }
+
+        contentStream.saveGraphicsState();
+        // Map slip pixels (origin top-left, y down) onto the box so template coordinates can be used as-is
+        contentStream.transform(new Matrix(width / slipWidth, 0, 0, -height / slipHeight, x, y + height));
+        contentStream.setNonStrokingColor(0f); // Black
+        int[] rectCount = {0};
+        compiledTemplate.visitMarks(numberSetsForSlip, globalOptionIndex, includeScannerMarks, (rx, ry, rw, rh) -> {
+            contentStream.addRect(rx, ry, rw, rh);
+            rectCount[0]++;
+        });
+        if (rectCount[0] > 0) {
+            contentStream.fill();
+        }
+        contentStream.restoreGraphicsState();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.lottooptionspro.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the integral-image thresholds with sums taken over every window pixel by pixel,
+ * including the clipped windows along the borders and across tile edges.
+ */
+public class AdaptiveBinarizerTest {
+
+    @Test
+    public void testSauvolaMatchesBruteForce() {
+        // Just over one tile each way, so some windows straddle a tile edge
+        BufferedImage image = unevenlyLit(270, 260, 1);
+        for (int windowSize : new int[]{3, 15, 41}) {
+            assertMatchesBruteForce(image, AdaptiveBinarizer.Method.SAUVOLA, windowSize, AdaptiveBinarizer.DEFAULT_SAUVOLA_K);
+        }
+    }
+
+    @Test
+    public void testLocalMeanMatchesBruteForce() {
+        BufferedImage image = unevenlyLit(270, 260, 2);
+        for (int windowSize : new int[]{3, 15, 41}) {
+            assertMatchesBruteForce(image, AdaptiveBinarizer.Method.LOCAL_MEAN, windowSize, AdaptiveBinarizer.DEFAULT_MEAN_OFFSET);
+        }
+    }
+
+    @Test
+    public void testWindowLargerThanImage() {
+        // Every window is clipped to the whole image
+        BufferedImage image = unevenlyLit(40, 30, 3);
+        assertMatchesBruteForce(image, AdaptiveBinarizer.Method.SAUVOLA, 101, AdaptiveBinarizer.DEFAULT_SAUVOLA_K);
+        assertMatchesBruteForce(image, AdaptiveBinarizer.Method.LOCAL_MEAN, 101, AdaptiveBinarizer.DEFAULT_MEAN_OFFSET);
+    }
+
+    @Test
+    public void testOtsuUsesHistogramThreshold() {
+        BufferedImage image = unevenlyLit(53, 47, 4);
+        int[] histogram = new int[256];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                histogram[gray(image.getRGB(x, y))]++;
+            }
+        }
+        int threshold = AdaptiveBinarizer.otsuThreshold(histogram);
+
+        boolean[] expected = new boolean[image.getWidth() * image.getHeight()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                expected[y * image.getWidth() + x] = gray(image.getRGB(x, y)) <= threshold;
+            }
+        }
+        assertArrayEquals(expected, AdaptiveBinarizer.inkMask(image, AdaptiveBinarizer.Method.OTSU, 0));
+    }
+
+    @Test
+    public void testOtsuThresholdSplitsTwoPeaks() {
+        assertEquals(2, AdaptiveBinarizer.otsuThreshold(new int[]{0, 5, 5, 0, 0, 0, 7, 7}));
+    }
+
+    private static void assertMatchesBruteForce(BufferedImage image, AdaptiveBinarizer.Method method, int windowSize, double k) {
+        boolean[] expected = bruteForce(image, method, windowSize, k);
+        boolean[] actual = AdaptiveBinarizer.inkMask(image, method, 0, windowSize, k);
+        assertArrayEquals(expected, actual, method + ", window " + windowSize);
+    }
+
+    private static boolean[] bruteForce(BufferedImage image, AdaptiveBinarizer.Method method, int windowSize, double k) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int radius = Math.max(1, windowSize / 2);
+        boolean[] ink = new boolean[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                long sum = 0;
+                long sumSquares = 0;
+                int count = 0;
+                for (int wy = Math.max(0, y - radius); wy <= Math.min(height - 1, y + radius); wy++) {
+                    for (int wx = Math.max(0, x - radius); wx <= Math.min(width - 1, x + radius); wx++) {
+                        int value = gray(image.getRGB(wx, wy));
+                        sum += value;
+                        sumSquares += value * value;
+                        count++;
+                    }
+                }
+                double mean = (double) sum / count;
+                int value = gray(image.getRGB(x, y));
+                if (method == AdaptiveBinarizer.Method.SAUVOLA) {
+                    double deviation = Math.sqrt(Math.max(0, (double) sumSquares / count - mean * mean));
+                    ink[y * width + x] = value <= mean * (1 + k * (deviation / 128.0 - 1));
+                } else {
+                    ink[y * width + x] = value < mean * (1 - k);
+                }
+            }
+        }
+        return ink;
+    }
+
+    private static int gray(int rgb) {
+        return (((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8;
+    }
+
+    /**
+     * Dark squares on paper that brightens from left to right, with some color noise.
+     */
+    private static BufferedImage unevenlyLit(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int light = 60 + 180 * x / width;
+                boolean mark = (x / 9) % 3 == 0 && (y / 9) % 3 == 0;
+                int base = mark ? light / 3 : light;
+                int r = Math.max(0, Math.min(255, base + random.nextInt(21) - 10));
+                int g = Math.max(0, Math.min(255, base + random.nextInt(21) - 10));
+                int b = Math.max(0, Math.min(255, base + random.nextInt(21) - 10));
+                image.setRGB(x, y, r << 16 | g << 8 | b);
+            }
+        }
+        return image;
+    }
+}
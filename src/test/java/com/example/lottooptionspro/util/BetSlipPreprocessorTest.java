@@ -0,0 +1,143 @@
+package com.example.lottooptionspro.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks the band-parallel engine against the original per-pixel loop, pixel for pixel.
+ */
+public class BetSlipPreprocessorTest {
+
+    // Tall enough to be split into several bands; odd width so nothing lines up by accident
+    private static final int WIDTH = 53;
+    private static final int HEIGHT = 211;
+
+    private static final int[] IMAGE_TYPES = {
+            BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_3BYTE_BGR,
+            BufferedImage.TYPE_BYTE_GRAY
+    };
+
+    // {threshold, distanceFromTop, distanceFromBottom, distanceFromLeft}
+    private static final int[][] SETTINGS = {
+            {128, 40, 60, 20},
+            {100, 0, 0, 0},
+            {200, HEIGHT, HEIGHT, WIDTH},
+            {90, 5000, 5000, 5000},
+            {160, -10, -10, -10},
+            {0, 30, 30, 30},
+            {300, 120, 120, 60},
+            {128, 150, 100, WIDTH + 1}
+    };
+
+    @Test
+    public void testMatchesPerPixelLoop() {
+        for (int type : IMAGE_TYPES) {
+            BufferedImage source = noise(type, type);
+            for (int[] settings : SETTINGS) {
+                assertMatchesReference(source, settings, "type " + type);
+            }
+        }
+    }
+
+    @Test
+    public void testSubimageMatchesPerPixelLoop() {
+        // A subimage shares its parent's raster, so it is read through getRGB instead of directly
+        BufferedImage source = noise(BufferedImage.TYPE_INT_RGB, 7).getSubimage(3, 5, WIDTH - 7, HEIGHT - 9);
+        for (int[] settings : SETTINGS) {
+            assertMatchesReference(source, settings, "subimage");
+        }
+    }
+
+    @Test
+    public void testGlobalThresholdMethodMatchesDefault() {
+        BufferedImage source = noise(BufferedImage.TYPE_3BYTE_BGR, 8);
+        for (int[] settings : SETTINGS) {
+            assertArrayEquals(
+                    pixels(BetSlipPreprocessor.process(source, settings[0], settings[1], settings[2], settings[3])),
+                    pixels(BetSlipPreprocessor.process(source, AdaptiveBinarizer.Method.GLOBAL_THRESHOLD,
+                            settings[0], settings[1], settings[2], settings[3])));
+        }
+    }
+
+    @Test
+    public void testToIntRgb() {
+        BufferedImage intRgb = noise(BufferedImage.TYPE_INT_RGB, 9);
+        assertSame(intRgb, BetSlipPreprocessor.toIntRgb(intRgb));
+
+        BufferedImage bgr = noise(BufferedImage.TYPE_3BYTE_BGR, 10);
+        BufferedImage converted = BetSlipPreprocessor.toIntRgb(bgr);
+        assertEquals(BufferedImage.TYPE_INT_RGB, converted.getType());
+        assertArrayEquals(pixels(bgr), pixels(converted));
+    }
+
+    private static void assertMatchesReference(BufferedImage source, int[] settings, String label) {
+        BufferedImage expected = referenceProcess(source, settings[0], settings[1], settings[2], settings[3]);
+        BufferedImage actual = BetSlipPreprocessor.process(source, settings[0], settings[1], settings[2], settings[3]);
+        assertEquals(BufferedImage.TYPE_INT_RGB, actual.getType());
+        assertArrayEquals(pixels(expected), pixels(actual),
+                label + ", threshold " + settings[0] + ", top " + settings[1] + ", bottom " + settings[2] + ", left " + settings[3]);
+    }
+
+    /**
+     * The preprocessing loop as it was before the band-parallel engine.
+     */
+    private static BufferedImage referenceProcess(BufferedImage original, int threshold, int distanceFromTop,
+                                                  int distanceFromBottom, int distanceFromLeft) {
+        BufferedImage processed = new BufferedImage(original.getWidth(), original.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < original.getHeight(); y++) {
+            for (int x = 0; x < original.getWidth(); x++) {
+                int rgb = original.getRGB(x, y);
+                Color color = new Color(rgb);
+                if (y < distanceFromTop) {
+                    if (x < distanceFromLeft && isBlackish(color, threshold)) {
+                        processed.setRGB(x, y, Color.BLACK.getRGB());
+                    } else {
+                        processed.setRGB(x, y, Color.WHITE.getRGB());
+                    }
+                } else if (y >= original.getHeight() - distanceFromBottom) {
+                    if (isBlackish(color, threshold)) {
+                        processed.setRGB(x, y, Color.BLACK.getRGB());
+                    } else {
+                        processed.setRGB(x, y, rgb);
+                    }
+                } else {
+                    processed.setRGB(x, y, Color.WHITE.getRGB());
+                }
+            }
+        }
+        return processed;
+    }
+
+    private static boolean isBlackish(Color color, int threshold) {
+        return color.getRed() < threshold && color.getGreen() < threshold && color.getBlue() < threshold;
+    }
+
+    /**
+     * Random pixels, biased towards dark ones so every threshold sees both outcomes.
+     */
+    private static BufferedImage noise(int type, long seed) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        Random random = new Random(seed);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int scale = random.nextBoolean() ? 96 : 256;
+                int rgb = random.nextInt(scale) << 16 | random.nextInt(scale) << 8 | random.nextInt(scale);
+                image.setRGB(x, y, 0xFF000000 | rgb);
+            }
+        }
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.lottooptionspro.util;
+
+import com.example.lottooptionspro.service.BetslipJobEstimate;
+import com.example.lottooptionspro.service.BetslipJobStrategy;
+import com.example.lottooptionspro.service.BetslipRenderMode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the footprint worked out for a job and the strategy picked from it as the heap shrinks.
+ */
+public class BetslipJobEstimateTest {
+
+    private static final int WIDTH = 1000;
+    private static final int HEIGHT = 800;
+    private static final int IN_FLIGHT = 4;
+    private static final long PLENTY = Long.MAX_VALUE / 4;
+
+    @Test
+    public void testColorSlipsUseCanvasBytesPerPixel() {
+        assertEquals(3L * WIDTH * HEIGHT, color(100, 100, 3, PLENTY).getBytesPerSlip());
+        assertEquals(4L * WIDTH * HEIGHT, color(100, 100, 4, PLENTY).getBytesPerSlip());
+    }
+
+    @Test
+    public void testScannerReadySlipsArePackedBits() {
+        BetslipJobEstimate estimate = BetslipJobEstimate.estimate(100, 100, 1001, HEIGHT,
+                BetslipRenderMode.SCANNER_READY, 3, IN_FLIGHT, PLENTY);
+        assertEquals(126L * HEIGHT, estimate.getBytesPerSlip());
+    }
+
+    @Test
+    public void testInMemoryPeakCountsDistinctSlipsAndConvertedCopies() {
+        BetslipJobEstimate estimate = color(500, 100, 3, PLENTY);
+        long bytesPerSlip = 3L * WIDTH * HEIGHT;
+        long expected = 100 * (bytesPerSlip + (long) WIDTH * HEIGHT)
+                + IN_FLIGHT * bytesPerSlip
+                + BetslipJobStrategy.IN_MEMORY.getPdfMainMemoryBytes();
+
+        assertEquals(expected, estimate.getInMemoryPeakBytes());
+        assertEquals(BetslipJobStrategy.IN_MEMORY, estimate.getStrategy());
+        assertEquals(expected, estimate.getPeakBytes());
+        assertEquals(IN_FLIGHT, estimate.getMaxInFlightSlips());
+    }
+
+    @Test
+    public void testStreamsWhenDistinctSlipsDoNotFit() {
+        long inMemoryPeak = color(500, 100, 3, PLENTY).getInMemoryPeakBytes();
+
+        // Only part of the available heap may be planned for, so exactly the in-memory peak is not enough
+        BetslipJobEstimate estimate = color(500, 100, 3, inMemoryPeak);
+        assertEquals(BetslipJobStrategy.STREAMING, estimate.getStrategy());
+        assertEquals(2L * IN_FLIGHT * 3 * WIDTH * HEIGHT + BetslipJobStrategy.STREAMING.getPdfMainMemoryBytes(),
+                estimate.getPeakBytes());
+        assertEquals(IN_FLIGHT, estimate.getMaxInFlightSlips());
+        assertEquals(inMemoryPeak, estimate.getInMemoryPeakBytes());
+    }
+
+    @Test
+    public void testFallsBackToDiskWhenEvenStreamingDoesNotFit() {
+        BetslipJobEstimate estimate = color(500, 100, 3, 3L * WIDTH * HEIGHT);
+        assertEquals(BetslipJobStrategy.DISK_BACKED, estimate.getStrategy());
+        assertEquals(1, estimate.getMaxInFlightSlips());
+        assertEquals(2L * 3 * WIDTH * HEIGHT + BetslipJobStrategy.DISK_BACKED.getPdfMainMemoryBytes(),
+                estimate.getPeakBytes());
+    }
+
+    @Test
+    public void testStrategyOnlyGetsMoreConservativeAsHeapShrinks() {
+        long inMemoryPeak = color(500, 100, 3, PLENTY).getInMemoryPeakBytes();
+        BetslipJobStrategy previous = BetslipJobStrategy.IN_MEMORY;
+        for (long available = 4 * inMemoryPeak; available > 0; available = available * 9 / 10) {
+            BetslipJobStrategy strategy = color(500, 100, 3, available).getStrategy();
+            assertTrue(strategy.ordinal() >= previous.ordinal(), "at " + available + " bytes: " + strategy);
+            previous = strategy;
+        }
+        assertEquals(BetslipJobStrategy.DISK_BACKED, previous);
+    }
+
+    @Test
+    public void testRenderingOnDemandTakesLonger() {
+        // Slips rendered on demand are rendered once per slip instead of once per distinct slip
+        long inMemoryPeak = color(500, 100, 3, PLENTY).getInMemoryPeakBytes();
+        BetslipJobEstimate inMemory = color(500, 100, 3, PLENTY);
+        BetslipJobEstimate streaming = color(500, 100, 3, inMemoryPeak);
+
+        assertTrue(streaming.getExpectedMillis() > inMemory.getExpectedMillis());
+        assertTrue(color(1000, 100, 3, PLENTY).getExpectedMillis() > inMemory.getExpectedMillis());
+    }
+
+    private static BetslipJobEstimate color(int slipCount, int distinctSlipCount, int bytesPerPixel, long availableBytes) {
+        return BetslipJobEstimate.estimate(slipCount, distinctSlipCount, WIDTH, HEIGHT, BetslipRenderMode.COLOR,
+                bytesPerPixel, IN_FLIGHT, availableBytes);
+    }
+}
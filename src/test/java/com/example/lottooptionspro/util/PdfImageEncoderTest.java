@@ -0,0 +1,151 @@
+package com.example.lottooptionspro.util;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Encodes slips with {@link PdfImageEncoder}, reads them back through a saved PDF and compares
+ * the decoded pixels with what PDFBox's own {@link LosslessFactory} produces for the same image.
+ */
+public class PdfImageEncoderTest {
+
+    // Odd sizes so rows do not line up with byte or word boundaries
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+
+    @Test
+    public void testThreeByteBgrMatchesLosslessFactory() throws IOException {
+        assertMatchesLosslessFactory(noise(BufferedImage.TYPE_3BYTE_BGR, 1));
+    }
+
+    @Test
+    public void testIntRgbMatchesLosslessFactory() throws IOException {
+        assertMatchesLosslessFactory(noise(BufferedImage.TYPE_INT_RGB, 2));
+    }
+
+    @Test
+    public void testGrayMatchesLosslessFactory() throws IOException {
+        assertMatchesLosslessFactory(noise(BufferedImage.TYPE_BYTE_GRAY, 3));
+    }
+
+    @Test
+    public void testArgbKeepsSoftMask() throws IOException {
+        BufferedImage image = noise(BufferedImage.TYPE_INT_ARGB, 4);
+        Decoded encoded = roundTrip(image, PdfImageEncoding.LOSSLESS);
+        Decoded expected = roundTrip(image, null);
+
+        assertArrayEquals(pixels(expected.image), pixels(encoded.image));
+        assertNotNull(encoded.softMask);
+        assertArrayEquals(pixels(expected.softMask), pixels(encoded.softMask));
+    }
+
+    @Test
+    public void testSubimageFallsBackToLosslessFactory() throws IOException {
+        BufferedImage parent = noise(BufferedImage.TYPE_3BYTE_BGR, 5);
+        assertMatchesLosslessFactory(parent.getSubimage(3, 2, WIDTH - 5, HEIGHT - 4));
+    }
+
+    @Test
+    public void testBilevelIsStoredAsCcittGroup4() throws IOException {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_BINARY);
+        Random random = new Random(6);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setRGB(x, y, random.nextInt(3) == 0 ? 0xFF000000 : 0xFFFFFFFF);
+            }
+        }
+
+        Decoded encoded = roundTrip(image, PdfImageEncoding.LOSSLESS);
+        assertEquals(COSName.CCITTFAX_DECODE, encoded.filters);
+        assertArrayEquals(pixels(roundTrip(image, null).image), pixels(encoded.image));
+        assertArrayEquals(pixels(image), pixels(encoded.image));
+    }
+
+    @Test
+    public void testJpegOnlyAppliesToColor() throws IOException {
+        assertEquals(COSName.DCT_DECODE, roundTrip(noise(BufferedImage.TYPE_3BYTE_BGR, 7), PdfImageEncoding.JPEG).filters);
+
+        BufferedImage gray = noise(BufferedImage.TYPE_BYTE_GRAY, 8);
+        Decoded encoded = roundTrip(gray, PdfImageEncoding.JPEG);
+        assertEquals(COSName.FLATE_DECODE, encoded.filters);
+        assertArrayEquals(pixels(roundTrip(gray, null).image), pixels(encoded.image));
+    }
+
+    private static void assertMatchesLosslessFactory(BufferedImage image) throws IOException {
+        Decoded encoded = roundTrip(image, PdfImageEncoding.LOSSLESS);
+        assertNull(encoded.softMask);
+        assertArrayEquals(pixels(roundTrip(image, null).image), pixels(encoded.image));
+    }
+
+    /**
+     * What was read back from the saved PDF, decoded before the document was closed.
+     */
+    private static final class Decoded {
+        final BufferedImage image;
+        final BufferedImage softMask;
+        final COSBase filters;
+
+        Decoded(PDImageXObject pdImage) throws IOException {
+            this.image = pdImage.getImage();
+            this.softMask = pdImage.getSoftMask() != null ? pdImage.getSoftMask().getImage() : null;
+            this.filters = pdImage.getCOSObject().getFilters();
+        }
+    }
+
+    /**
+     * Embed the image in a one-page document, save it and load it back.
+     *
+     * @param encoding null to embed the image with {@link LosslessFactory} instead
+     */
+    private static Decoded roundTrip(BufferedImage image, PdfImageEncoding encoding) throws IOException {
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            PDImageXObject pdImage = encoding != null
+                    ? PdfImageEncoder.createImage(document, image, encoding)
+                    : LosslessFactory.createFromImage(document, image);
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                contentStream.drawImage(pdImage, 0, 0, image.getWidth(), image.getHeight());
+            }
+            document.save(saved);
+        }
+
+        try (PDDocument loaded = PDDocument.load(saved.toByteArray())) {
+            PDResources resources = loaded.getPage(0).getResources();
+            return new Decoded((PDImageXObject) resources.getXObject(resources.getXObjectNames().iterator().next()));
+        }
+    }
+
+    private static BufferedImage noise(int type, long seed) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        Random random = new Random(seed);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.lottooptionspro.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks which slips count as rendering identically and how a plan maps them back to the job.
+ */
+public class SlipDeduplicatorTest {
+
+    @Test
+    public void testNumberOrderWithinPanelDoesNotMatter() {
+        SlipDeduplicator.Plan plan = SlipDeduplicator.plan(List.of(
+                slip(new int[]{1, 2, 3}, new int[]{10, 20}),
+                slip(new int[]{3, 1, 2}, new int[]{20, 10})), 0);
+
+        assertEquals(1, plan.distinctSlips.size());
+        assertArrayEquals(new int[]{0, 0}, plan.distinctIndexBySlip);
+        assertEquals(1, plan.getRendersSaved());
+    }
+
+    @Test
+    public void testRepeatedNumbersCountOnce() {
+        // A number marked twice fills the same rectangle twice, so it renders like one mark
+        SlipDeduplicator.Plan plan = SlipDeduplicator.plan(List.of(
+                slip(new int[]{5, 5, 7}),
+                slip(new int[]{7, 5})), 0);
+
+        assertEquals(1, plan.distinctSlips.size());
+    }
+
+    @Test
+    public void testPanelsAreNotInterchangeable() {
+        SlipDeduplicator.Plan plan = SlipDeduplicator.plan(List.of(
+                slip(new int[]{1, 2}, new int[]{3, 4}),
+                slip(new int[]{3, 4}, new int[]{1, 2}),
+                slip(new int[]{1, 2}),
+                slip(new int[]{1, 2}, new int[0]),
+                slip(new int[]{1}, new int[]{2, 3, 4})), 0);
+
+        assertEquals(5, plan.distinctSlips.size());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, plan.distinctIndexBySlip);
+        assertEquals(0, plan.getRendersSaved());
+    }
+
+    @Test
+    public void testOptionIndexDoesNotSplitIdenticalSlips() {
+        List<List<int[]>> slips = List.of(slip(new int[]{4, 8}), slip(new int[]{8, 4}), slip(new int[]{9}));
+        for (int optionIndex : new int[]{-1, 0, 2}) {
+            SlipDeduplicator.Plan plan = SlipDeduplicator.plan(slips, optionIndex);
+            assertArrayEquals(new int[]{0, 0, 1}, plan.distinctIndexBySlip);
+        }
+    }
+
+    @Test
+    public void testDistinctSlipsKeepFirstOccurrenceInOrder() {
+        List<List<int[]>> slips = List.of(
+                slip(new int[]{1}),
+                slip(new int[]{2}),
+                slip(new int[]{1}),
+                slip(new int[]{3}),
+                slip(new int[]{2}),
+                slip(new int[]{1}));
+        SlipDeduplicator.Plan plan = SlipDeduplicator.plan(slips, 0);
+
+        assertEquals(3, plan.distinctSlips.size());
+        assertSame(slips.get(0), plan.distinctSlips.get(0));
+        assertSame(slips.get(1), plan.distinctSlips.get(1));
+        assertSame(slips.get(3), plan.distinctSlips.get(2));
+        assertArrayEquals(new int[]{0, 1, 0, 2, 1, 0}, plan.distinctIndexBySlip);
+        assertArrayEquals(new int[]{0, 1, 0, 3, 1, 0}, plan.getFirstSlipIndexes());
+        assertEquals(3, plan.getRendersSaved());
+    }
+
+    @Test
+    public void testExpandSharesDistinctRenders() {
+        SlipDeduplicator.Plan plan = SlipDeduplicator.plan(List.of(
+                slip(new int[]{1}),
+                slip(new int[]{2}),
+                slip(new int[]{1})), 0);
+        Object first = new Object();
+        Object second = new Object();
+
+        List<Object> expanded = plan.expand(Arrays.asList(first, second));
+        assertEquals(3, expanded.size());
+        assertSame(first, expanded.get(0));
+        assertSame(second, expanded.get(1));
+        assertSame(first, expanded.get(2));
+    }
+
+    @Test
+    public void testEmptyJob() {
+        SlipDeduplicator.Plan plan = SlipDeduplicator.plan(Collections.emptyList(), 0);
+
+        assertEquals(0, plan.distinctSlips.size());
+        assertEquals(0, plan.distinctIndexBySlip.length);
+        assertEquals(0, plan.getFirstSlipIndexes().length);
+        assertEquals(0, plan.expand(Collections.emptyList()).size());
+    }
+
+    private static List<int[]> slip(int[]... panels) {
+        return Arrays.asList(panels);
+    }
+}